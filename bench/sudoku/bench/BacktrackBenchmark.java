@@ -0,0 +1,48 @@
+package sudoku.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the simple back-tracking solvers. They take minutes on the
+ * pathological and the 16x16 boards, so only the 4x4 and the regular 9x9
+ * boards of the corpus are used by default.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BacktrackBenchmark {
+    @Param({"Simple2DBacktrackSolver", "Simple1DBacktrackSolver"})
+    public String engine;
+
+    @Param({"4x4-easy", "4x4-hard", "9x9-easy", "9x9-hard"})
+    public String board;
+
+    int[] puzzle;
+    SolverHandle solver;
+
+    @Setup
+    public void setUp() throws Exception {
+        puzzle = Corpus.get(board);
+        solver = new SolverHandle(engine, puzzle);
+    }
+
+    @Benchmark
+    public int solve() throws Throwable {
+        return solver.solve(puzzle);
+    }
+}
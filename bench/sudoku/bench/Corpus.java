@@ -0,0 +1,93 @@
+package sudoku.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The boards the benchmarks are run against, by name. The names give the
+ * size of the board and how hard it is: "easy" boards have many givens,
+ * "hard" boards few, and "pathological" boards are built against the
+ * top-left to bottom-right order of the simple back-tracking solvers.
+ * Compact boards larger than 9x9 write 10 and up as letters.
+ */
+final class Corpus {
+    static final Map<String, String> BOARDS = new HashMap<String, String>();
+
+    static {
+        BOARDS.put("4x4-easy", "3,4,1,0,0,2,0,0,0,0,2,0,0,1,4,3");
+        BOARDS.put("4x4-hard", "0,0,0,0,0,0,2,0,0,1,0,0,0,0,0,3");
+        BOARDS.put("6x6-hard", ".31.6.2..5....2...6...1.....53...1..");
+        BOARDS.put("9x9-easy", "0,0,5,0,4,0,2,0,8,9,0,0,0,2,0,0,0,6,8,0,0,1,"
+            + "0,9,0,0,0,0,0,0,0,0,4,6,0,0,4,0,7,0,0,0,9,0,5,0,0,3,6,0,0,0,0,"
+            + "0,0,0,0,7,0,0,0,0,9,0,0,0,0,3,0,0,0,1,7,0,2,0,6,0,4,0,0");
+        BOARDS.put("9x9-hard", "8..........36......7..9.2...5...7.......457....."
+            + "1...3...1....68..85...1..9....4..");
+        BOARDS.put("9x9-pathological", "..............3.85..1.2.......5.7..."
+            + "..4...1...9.......5......73..2.1........4...9");
+        BOARDS.put("16x16-easy", "4,0,11,0,2,0,12,10,15,1,0,3,6,5,7,0,0,0,0,0,"
+            + "0,0,7,0,11,9,4,8,16,0,0,2,0,0,2,0,15,0,0,1,13,0,0,0,8,0,0,11,"
+            + "7,5,13,6,11,8,4,0,2,10,12,0,3,1,14,0,2,8,4,0,12,0,15,0,0,0,13,"
+            + "5,0,6,11,0,0,0,14,5,7,9,11,0,0,0,0,0,1,16,0,12,15,0,0,1,0,0,0,"
+            + "3,7,6,0,0,10,8,0,4,11,6,0,9,0,10,0,8,12,0,15,1,0,0,0,0,10,11,"
+            + "8,0,16,12,0,2,0,15,5,14,0,13,0,6,0,13,0,0,0,4,0,11,0,2,1,0,0,"
+            + "15,5,3,5,15,0,14,6,0,0,0,8,11,0,0,12,2,0,0,0,0,0,0,3,14,5,0,6,"
+            + "13,0,0,4,11,10,8,6,0,5,0,9,11,8,7,0,0,0,2,0,12,3,1,0,0,9,11,"
+            + "10,2,16,0,1,12,3,15,0,14,6,5,0,4,10,2,1,15,3,12,5,0,6,0,11,0,"
+            + "0,9,0,0,0,15,5,13,0,0,9,0,0,0,2,4,0,10");
+        BOARDS.put("16x16-hard", "0,12,0,0,13,0,14,0,10,7,11,15,16,0,8,0,6,14,"
+            + "0,0,0,0,0,0,5,8,0,16,15,11,0,10,0,0,16,0,7,0,0,0,0,0,0,0,3,0,"
+            + "13,6,10,0,0,0,0,5,0,16,0,0,0,3,0,0,4,9,0,0,0,0,6,14,15,0,11,"
+            + "10,0,7,0,0,5,0,2,3,8,0,0,0,0,7,0,0,0,0,0,0,6,14,11,1,7,0,5,0,"
+            + "0,8,14,6,15,0,4,16,9,0,14,15,0,6,9,0,0,0,0,0,0,0,7,1,0,11,0,7,"
+            + "6,14,0,0,0,0,0,2,0,0,0,4,11,0,0,8,0,12,0,15,7,0,0,11,0,10,0,0,"
+            + "0,0,3,13,0,0,0,1,4,0,16,0,8,9,0,7,14,0,1,0,0,0,2,0,0,0,15,0,0,"
+            + "0,0,0,12,16,4,9,0,1,0,0,6,0,0,0,0,0,0,0,0,0,0,0,12,0,0,0,10,"
+            + "14,0,0,0,11,2,0,0,0,0,0,0,3,1,0,0,11,0,16,0,12,14,10,0,0,0,10,"
+            + "0,0,0,0,5,12,0,0,0,0,11,0,0,4");
+        BOARDS.put("12x12-hard", "B.6.....21........35.....13..7..C..476"
+            + ".CA9..1....9421.5B......5B.................5B794.1.."
+            + ".7......B.68C.....8.A...1.5B7...1.5B.6........8....2"
+            + ".3");
+        BOARDS.put("25x25-easy", "H...2..8.F3416M.9J..L..5B.D...3.16...J"
+            + "PO.KN...7AG2341.....POL.....7.......F.9J..LK.5.H7AG2"
+            + "..8..3..6..KN5B.7.G.ED8..3416..9..O7AG2ED....416MC9J"
+            + "P.L.N.B.D..F3........OLKN5B.7.G2E.1..C.J.....5B.7A.2"
+            + ".D8I..9JPOL.N....AG2ED...34.6....5....G2.D8IF341.M.9"
+            + "JPO.A..ED.IF..1.MC.J..LK.5B..8...4.6.C..PO.KN5B.7AG2"
+            + "...6MC9J.OLK...H7.G2.D8IF3.J....N.B..AG.ED..F.4.6.C."
+            + ".5BH....E..I......C9JP..KG2.D.IF..16M.9J.OLK....7AI."
+            + "3416M.9..OL...B.7A.2ED8..C9.....N5BH...2.....3.1P..."
+            + "..BH7A...D8...41..C9J.BH..G...8IF.....C9JPOL..2....."
+            + ".416MC.J...KN.B..A...4....9.....N5BH7AG2ED8.M...POLK"
+            + ".5...A.2ED..F.4....KN...7AG..D8..3416.C9JPB......D.I"
+            + "F34.6.C9JP...N.");
+    }
+
+    private Corpus() {
+    }
+
+    /**
+     * returns the named board row by row, with empty positions denoted by
+     * zeroes.
+     */
+    static int[] get(String name) {
+        String board = BOARDS.get(name);
+        if (board == null) {
+            throw new IllegalArgumentException("unknown board: " + name);
+        }
+        if (board.indexOf(',') >= 0) {
+            String[] values = board.split(",");
+            int[] puzzle = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                puzzle[i] = Integer.parseInt(values[i]);
+            }
+            return puzzle;
+        }
+        int[] puzzle = new int[board.length()];
+        for (int i = 0; i < puzzle.length; i++) {
+            char ch = board.charAt(i);
+            puzzle[i] = (ch == '.' ? 0 : Character.digit(ch, 36));
+        }
+        return puzzle;
+    }
+}
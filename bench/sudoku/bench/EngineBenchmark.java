@@ -0,0 +1,52 @@
+package sudoku.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the solvers that handle every board of the corpus, from 4x4 up to
+ * 25x25 and including the rectangular regions of 6x6 and 12x12 boards and
+ * the pathological ones. Other engines can be measured
+ * by naming their class with -p engine=....
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+    @Param({"BitmaskSolver", "ArrayDancingLinksSolver",
+        "ParallelDancingLinksSolver", "DancingLinksSolver"})
+    public String engine;
+
+    @Param({"4x4-easy", "4x4-hard", "6x6-hard", "9x9-easy", "9x9-hard",
+        "9x9-pathological", "12x12-hard", "16x16-easy", "16x16-hard",
+        "25x25-easy"})
+    public String board;
+
+    int[] puzzle;
+    SolverHandle solver;
+
+    @Setup
+    public void setUp() throws Exception {
+        puzzle = Corpus.get(board);
+        solver = new SolverHandle(engine, puzzle);
+    }
+
+    @Benchmark
+    public int solve() throws Throwable {
+        return solver.solve(puzzle);
+    }
+}
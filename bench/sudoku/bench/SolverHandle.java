@@ -0,0 +1,59 @@
+package sudoku.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Drives one solver through method handles. JMH only accepts benchmarks in a
+ * named package, and the solvers live in the default package, which cannot
+ * be imported from one; the handles are looked up once per trial, so the
+ * cost of a call is small next to a solve.
+ */
+final class SolverHandle {
+    final MethodHandle reset;
+    final MethodHandle solve;
+    final MethodHandle solutionCount;
+    final Object solver;
+
+    /**
+     * creates a solver of the named class for the board that stops at the
+     * first solution and does not print.
+     */
+    SolverHandle(String className, int[] puzzle) throws Exception {
+        Class<?> base = Class.forName("Solver");
+        solver = Class.forName(className)
+            .getConstructor(int[].class, String.class)
+            .newInstance(puzzle, className);
+        // stop at the first solution without keeping a copy of it
+        Object collector = Class.forName("SolutionCollector")
+            .getConstructor(int.class, boolean.class).newInstance(1, false);
+        base.getMethod("setListener", Class.forName("SolutionListener"))
+            .invoke(solver, collector);
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        reset = lookup.findVirtual(base, "reset",
+            MethodType.methodType(void.class, int[].class)).bindTo(solver);
+        solve = lookup.findVirtual(base, "solve",
+            MethodType.methodType(void.class)).bindTo(solver);
+        solutionCount = lookup.unreflectGetter(field(base, "solutionCount"))
+            .bindTo(solver);
+    }
+
+    private static Field field(Class<?> base, String name) throws Exception {
+        Field field = base.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    /**
+     * resets the solver to the board and solves it; returns the number of
+     * solutions found.
+     */
+    int solve(int[] puzzle) throws Throwable {
+        reset.invokeExact(puzzle);
+        solve.invokeExact();
+        return (int)solutionCount.invokeExact();
+    }
+}
@@ -0,0 +1,458 @@
+/**
+ * The ArrayDancingLinksSolver solves a sudoku board using Donald E. Knuth's
+ * Dancing Links algorithm, like the DancingLinksSolver, but keeps the
+ * doubly-linked list in parallel integer arrays instead of a graph of Node
+ * objects.
+ *
+ * Index 0 of every array is the root, indices 1 to (4 * size * size) are the
+ * column headers and the data nodes follow. The arrays hold the full matrix
+ * for the size of the board and are built on the first board; as in the
+ * DancingLinksSolver, the givens are applied by selecting their rows, and
+ * a solver reset for the next board of the same size restores the matrix by
+ * taking back those selections instead of building it again. Neither that
+ * nor the search allocates anything.
+ *
+ * On boards of bucketSize and larger, the headers are also kept in a
+ * doubly-linked list per column size, which cover and uncover maintain as
+ * the sizes change. Choosing the column with the fewest nodes then takes the
+ * first non-empty list instead of a scan of all remaining headers; the extra
+ * bookkeeping pays off on large boards, where the header list is long, and
+ * halves the search time of 16x16 and 25x25 boards.
+ **/
+public class ArrayDancingLinksSolver extends ResumableSolver {
+    int[] left;
+    int[] right;
+    int[] up;
+    int[] down;
+    int[] column; // header of the column each node belongs to
+    int[] colSize; // number of data nodes in each column, indexed by header
+    int[] candidate; // (cell * size + value - 1) of the row each node is in
+    int[] solution; // data node of the row tried at each level
+    int[] chosen; // header of the column covered at each level
+    int level; // current level of the search
+    int base; // level the search started at
+    boolean fresh; // the current level has yet to choose its column
+    int depth; // number of rows in the current solution
+    int[] givens; // rows selected for the givens, in order
+    int givenCount;
+    boolean unsolvable; // the givens contradict each other
+    boolean[] satisfied; // work arrays of LinkedListBuilder.applyGivens
+    int[] count;
+    int[] last;
+    boolean propagate = true; // fill in forced positions before searching
+    int bucketSize = 16; // smallest board to keep the lists by size for
+    boolean bucketed; // columns are chosen through the lists by size
+    boolean lastOfSize; // of the smallest columns, choose the last instead
+
+    // the lists of headers by column size; index (columns + 1 + s) is the
+    // head of the list of columns of size s
+    int[] nextInSize;
+    int[] prevInSize;
+    int bucketBase; // index of the head of the list of empty columns
+
+    public ArrayDancingLinksSolver(String[] input, String name) {
+        this(parseInput(input), name);
+    }
+
+    public ArrayDancingLinksSolver(int[] puzzle, String name) {
+        super(puzzle, name);
+        init2DArray(puzzle);
+    }
+
+    public void solve() {
+        long start = stats.start();
+        int empty = (SolverStats.ENABLED ? emptyPositions() : 0);
+        buildMatrix();
+        if (SolverStats.ENABLED) {
+            stats.propagations += empty - emptyPositions();
+        }
+        initLevels();
+        start = stats.built(start);
+        startRun();
+        if (!unsolvable) search(0);
+        stats.searched(start);
+    }
+
+    /**
+     * allocates the stack of the search, one level per position at most.
+     **/
+    void initLevels() {
+        int levels = size * size + 1;
+        if (solution == null || solution.length != levels) {
+            solution = new int[levels];
+            chosen = new int[levels];
+        }
+    }
+
+    /**
+     * builds the exact cover matrix on the first board of a size, or
+     * restores it on the next ones, and selects the rows of the givens. The
+     * matrix has a column for each constraint (position, number in row,
+     * number in column and number in region) and a row for each number in
+     * each position; every row has exactly four nodes, one per constraint
+     * type.
+     *
+     * When propagate is set, the positions forced by the givens are filled
+     * in on the board first and their rows selected as well; a board whose
+     * givens contradict each other is marked unsolvable and not searched.
+     **/
+    void buildMatrix() {
+        int cells = size * size;
+        int columns = 4 * cells;
+        if (colSize == null || colSize.length != columns + 1
+                || bucketed != (size >= bucketSize)) {
+            createMatrix(columns);
+        } else {
+            restoreMatrix();
+        }
+        unsolvable = !LinkedListBuilder.applyGivens(board, propagate,
+            satisfied, count, last);
+        givenCount = 0;
+        for (int i = 0; i < size && !unsolvable; i++) {
+            for (int j = 0; j < size; j++) {
+                if (board[i][j] == 0) continue;
+                int r = rowNode(i, j, board[i][j]);
+                cover(column[r]);
+                for (int n = right[r]; n != r; n = right[n]) {
+                    cover(column[n]);
+                }
+                givens[givenCount++] = r;
+            }
+        }
+        if (bucketed) fillBuckets();
+    }
+
+    /**
+     * returns the first node of the row of the number k at row i and
+     * column j.
+     **/
+    int rowNode(int i, int j, int k) {
+        int cells = size * size;
+        return 1 + 4 * cells + 4 * ((k - 1) * cells + i * size + j);
+    }
+
+    /**
+     * allocates and links the full matrix.
+     **/
+    void createMatrix(int columns) {
+        int cells = size * size;
+        int nodes = 1 + columns + 4 * cells * size;
+        left = new int[nodes];
+        right = new int[nodes];
+        up = new int[nodes];
+        down = new int[nodes];
+        column = new int[nodes];
+        candidate = new int[nodes];
+        colSize = new int[columns + 1];
+        givens = new int[cells];
+        satisfied = new boolean[columns];
+        count = new int[columns];
+        last = new int[columns];
+        bucketed = (size >= bucketSize);
+        level = -1;
+        fresh = false;
+
+        // link the root and the headers
+        for (int c = 0; c <= columns; c++) {
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+            left[c] = (c == 0 ? columns : c - 1);
+            right[c] = (c == columns ? 0 : c + 1);
+        }
+        createRows(columns);
+        if (bucketed) initBuckets(columns);
+    }
+
+    /**
+     * creates four linked nodes for each number in each position.
+     **/
+    void createRows(int columns) {
+        // rows are ordered 1R1C1,...1R1C9,1R2C1...1R9C9,2R1C1...2R9C9...9R9C9
+        int n = columns + 1;
+        for (int k = 1; k <= size; k++) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    int cand = (i * size + j) * size + k - 1;
+                    for (int type = 0; type < 4; type++) {
+                        appendNode(n + type, 1 + LinkedListBuilder.column(type,
+                            i, j, k, size), cand);
+                    }
+                    for (int x = 0; x < 4; x++) {
+                        left[n + x] = n + (x + 3) % 4;
+                        right[n + x] = n + (x + 1) % 4;
+                    }
+                    n += 4;
+                }
+            }
+        }
+    }
+
+    /**
+     * takes back the rows the search left selected, deepest first, and then
+     * the rows of the givens, which leaves the full matrix as it was built.
+     **/
+    void restoreMatrix() {
+        if (!fresh && level >= 0) uncover(chosen[level]);
+        for (int d = level - 1; d >= 0; d--) {
+            int r = solution[d];
+            for (int n = left[r]; n != r; n = left[n]) {
+                uncover(column[n]);
+            }
+            uncover(chosen[d]);
+        }
+        level = -1;
+        fresh = false;
+        for (int g = givenCount - 1; g >= 0; g--) {
+            int r = givens[g];
+            for (int n = left[r]; n != r; n = left[n]) {
+                uncover(column[n]);
+            }
+            uncover(column[r]);
+        }
+        givenCount = 0;
+    }
+
+    /**
+     * allocates the lists by size.
+     **/
+    void initBuckets(int columns) {
+        bucketBase = columns + 1;
+        nextInSize = new int[bucketBase + size + 1];
+        prevInSize = new int[bucketBase + size + 1];
+        fillBuckets();
+    }
+
+    /**
+     * puts the headers of the remaining columns in the lists of their size,
+     * in the order of the header list. The lists are refilled once the
+     * givens are applied, so that ties are broken as for a matrix built
+     * for the board alone, whatever order covering the givens left.
+     **/
+    void fillBuckets() {
+        for (int s = 0; s <= size; s++) {
+            nextInSize[bucketBase + s] = bucketBase + s;
+            prevInSize[bucketBase + s] = bucketBase + s;
+        }
+        for (int c = right[0]; c != 0; c = right[c]) {
+            addToBucket(c);
+        }
+    }
+
+    void addToBucket(int c) {
+        int head = bucketBase + colSize[c];
+        nextInSize[c] = nextInSize[head];
+        prevInSize[c] = head;
+        prevInSize[nextInSize[head]] = c;
+        nextInSize[head] = c;
+    }
+
+    void removeFromBucket(int c) {
+        nextInSize[prevInSize[c]] = nextInSize[c];
+        prevInSize[nextInSize[c]] = prevInSize[c];
+    }
+
+    /**
+     * appends data node n to the bottom of column c.
+     **/
+    void appendNode(int n, int c, int cand) {
+        up[n] = up[c];
+        down[n] = c;
+        down[up[c]] = n;
+        up[c] = n;
+        column[n] = c;
+        candidate[n] = cand;
+        colSize[c]++;
+    }
+
+    @Override
+    void updateBoard() {
+        for (int d = 0; d < depth; d++) {
+            int cand = candidate[solution[d]];
+            board[cand / size / size][cand / size % size] = cand % size + 1;
+        }
+    }
+
+    /**
+     * copies the givens from the board and the selected rows on top of
+     * them, leaving the board as it is.
+     */
+    @Override
+    void copySolution(int[] dest) {
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(board[i], 0, dest, i * size, size);
+        }
+        for (int d = 0; d < depth; d++) {
+            int cand = candidate[solution[d]];
+            dest[cand / size] = cand % size + 1;
+        }
+    }
+
+    /**
+     * starts the search for exact covers at level k; the levels below are
+     * left alone, so that a search can start from rows already selected.
+     **/
+    void search(int k) {
+        base = k;
+        level = k;
+        fresh = true;
+        stats.enter();
+        runSearch();
+    }
+
+    /**
+     * searches for exact covers from the current level; sets suspended if
+     * the search stopped before it was complete.
+     *
+     * As in the DancingLinksSolver, the state is kept in solution and chosen
+     * instead of on the call stack: a fresh level has yet to choose its
+     * column, otherwise the row of the level in solution is tried next, and
+     * the header in place of a row means the rows are exhausted.
+     **/
+    @Override
+    void runSearch() {
+        while (level >= base) {
+            if (fresh) {
+                if (right[0] == 0) {
+                    depth = level;
+                    boolean more = foundSolution();
+                    stats.leave();
+                    backtrack();
+                    if (!more) {
+                        suspended = true;
+                        return;
+                    }
+                    continue;
+                }
+                int c = chooseColumn();
+                cover(c);
+                chosen[level] = c;
+                solution[level] = down[c];
+                fresh = false;
+            }
+            int r = solution[level];
+            if (r == chosen[level]) {
+                uncover(r);
+                stats.leave();
+                backtrack();
+                continue;
+            }
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+            level++;
+            fresh = true;
+            stats.enter();
+            if (nodeVisited()) {
+                suspended = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * goes back to the previous level, taking back its row and moving on to
+     * the next one.
+     **/
+    void backtrack() {
+        fresh = false;
+        if (--level < base) return;
+        int r = solution[level];
+        for (int j = left[r]; j != r; j = left[j]) {
+            uncover(column[j]);
+        }
+        solution[level] = down[r];
+        stats.backtrack();
+    }
+
+    /**
+     * returns the column with the minimum number of nodes, thus minimizing
+     * the branching factor; an empty column is returned right away as the
+     * current branch cannot be completed. Ties go to the first such column
+     * in the header list, or in the list of its size, unless lastOfSize is
+     * set, which makes the search take a different path through the tree.
+     **/
+    int chooseColumn() {
+        if (bucketed) {
+            for (int head = bucketBase; ; head++) {
+                if (nextInSize[head] != head) {
+                    return (lastOfSize ? prevInSize[head] : nextInSize[head]);
+                }
+            }
+        }
+        int minHeader = right[0];
+        int minSize = Integer.MAX_VALUE;
+        for (int c = right[0]; c != 0; c = right[c]) {
+            if (colSize[c] < minSize || (lastOfSize && colSize[c] == minSize)) {
+                minSize = colSize[c];
+                minHeader = c;
+                if (minSize == 0) break;
+            }
+        }
+        return minHeader;
+    }
+
+    void cover(int c) {
+        stats.cover();
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        if (bucketed) {
+            coverBucketed(c);
+            return;
+        }
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                colSize[column[j]]--;
+            }
+        }
+    }
+
+    void coverBucketed(int c) {
+        removeFromBucket(c);
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                int d = column[j];
+                removeFromBucket(d);
+                colSize[d]--;
+                addToBucket(d);
+            }
+        }
+    }
+
+    void uncover(int c) {
+        stats.uncover();
+        if (bucketed) {
+            uncoverBucketed(c);
+            return;
+        }
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                colSize[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+    }
+
+    void uncoverBucketed(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                int d = column[j];
+                removeFromBucket(d);
+                colSize[d]++;
+                addToBucket(d);
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        addToBucket(c);
+        right[left[c]] = c;
+        left[right[c]] = c;
+    }
+}
@@ -0,0 +1,600 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+/**
+ * Solves many sudoku boards in a single run. The boards are read line by
+ * line from a file, or from stdin when no file is given, in either format
+ * understood by PuzzleFormat. The first solution of each board is written to
+ * sysout in the format of its input line, or "no solution" when there is
+ * none, so that output line n belongs to input board n. With -unique the
+ * search stops at the second solution and boards with more than one solution
+ * are written as "multiple solutions".
+ *
+ * With -timeout the search for each board is given that many milliseconds
+ * and with -nodes that many nodes of the search tree; a board whose search
+ * runs out of either is written as "timed out", so that a single hard board
+ * cannot hold up the run.
+ *
+ * The boards are solved in chunks on a work-stealing pool with one thread
+ * per core unless -threads says otherwise. Each thread resets its own solver
+ * instance for every board, as solvers keep mutable state and cannot be
+ * shared. Finished chunks wait in a reorder buffer of a few chunks per
+ * thread until all chunks before them are written, which keeps the output in
+ * input order and the memory bounded. The number of boards solved per second
+ * is printed to syserr at the end.
+ *
+ * When SolverStats.ENABLED is set, the statistics of all boards are totalled,
+ * published over JMX as sudoku:type=SolverStats,name=BatchSudoku while the
+ * run lasts and printed to syserr at the end.
+ *
+ * With -cache every worker looks its boards up in a SolutionCache of that
+ * many boards, shared by all threads, before solving them, see
+ * CachingSolver; it is counted as a hit when a board, or a board equivalent
+ * under the symmetries of sudoku, was solved before. With -cachefile the
+ * cache is loaded from the file, if it exists, and saved to it at the end.
+ * The hits, misses and evictions are published over JMX as
+ * sudoku:type=SolutionCache,name=BatchSudoku and printed to syserr at the
+ * end.
+ *
+ * The portfolio engine races several engines on each board; its solvers
+ * share what they learn about which engine to start first.
+ *
+ * The lanes engine propagates the boards of each chunk together, see
+ * LaneBatch, and searches only the boards propagation leaves open.
+ *
+ * A file in the packed format of PackedFormat is recognized by its header
+ * and decoded straight into the boards of the chunks, with no line or string
+ * for each board; the solutions are then written in the compact format. If
+ * the file holds solutions, the solutions found are compared with them and
+ * the number that differ is printed to syserr. With -out the boards and the
+ * solutions found are written to a packed file instead of sysout; a board
+ * that does not parse, or is not the size of the first board, is reported
+ * on syserr instead.
+ *
+ * Usage: java BatchSudoku [-engine bitmask|lanes|arraydlx|arraydlx-last|
+ *                                  portfolio|paralleldlx|dlx|2d|1d]
+ *                         [-threads n] [-unique] [-timeout ms]
+ *                         [-nodes n] [-out packed] [-cache n]
+ *                         [-cachefile file] [file]
+ **/
+public class BatchSudoku {
+    static final int CHUNK_SIZE = 256; // boards solved by one task
+    static final int CHUNKS_PER_THREAD = 4; // reorder buffer per thread
+    static SolverStats total = new SolverStats(); // statistics of all boards
+    static long timeout; // milliseconds per board; zero for any
+    static long budget; // search nodes per board; zero for any
+    static PortfolioSolver.Ranking ranking
+        = new PortfolioSolver.Ranking(); // shared by the portfolio solvers
+    static SolutionCache cache; // shared by the workers; null for none
+    static final int SOLVED = Solver.UNIQUE; // result of a board solved
+    static final int INVALID = -1; // result of a line holding no board
+    static final int DEFAULT_CACHE_SIZE = 1 << 20; // boards, for -cachefile
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException, ExecutionException {
+        String engine = "bitmask";
+        String file = null;
+        String outFile = null; // packed file for the results
+        String cacheFile = null; // cache loaded before and saved after
+        boolean unique = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-engine") && i + 1 < args.length) {
+                engine = args[++i];
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-unique")) {
+                unique = true;
+            } else if (args[i].equals("-timeout") && i + 1 < args.length) {
+                timeout = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-nodes") && i + 1 < args.length) {
+                budget = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-out") && i + 1 < args.length) {
+                outFile = args[++i];
+            } else if (args[i].equals("-cache") && i + 1 < args.length) {
+                cache = new SolutionCache(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-cachefile") && i + 1 < args.length) {
+                cacheFile = args[++i];
+            } else {
+                file = args[i];
+            }
+        }
+
+        Path path = (file == null ? null : Paths.get(file));
+        PackedFormat.Reader packed = (path != null
+            && PackedFormat.isPacked(path) ? new PackedFormat.Reader(path)
+            : null);
+        BufferedReader in = (packed != null ? null
+            : new BufferedReader(file == null
+                ? new InputStreamReader(System.in) : new FileReader(file)));
+        Output out = new Output(outFile == null ? null : Paths.get(outFile));
+
+        if (cacheFile != null && cache == null) {
+            cache = new SolutionCache(DEFAULT_CACHE_SIZE);
+        }
+        if (cacheFile != null && Files.exists(Paths.get(cacheFile))) {
+            cache.load(Paths.get(cacheFile));
+        }
+        try {
+            if (SolverStats.ENABLED) total.register("BatchSudoku");
+            if (cache != null) cache.register("BatchSudoku");
+        } catch (JMException jme) {
+            System.err.println("statistics not published: " + jme);
+        }
+
+        long startTime = System.nanoTime();
+        long count;
+        try {
+            count = (threads <= 1
+                ? solveSequential(engine, unique, in, packed, out)
+                : solveParallel(engine, unique, threads, in, packed, out));
+        } finally {
+            out.close();
+            if (in != null) in.close();
+            if (packed != null) packed.close();
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        System.err.println("solved " + count + " puzzles in "
+            + (elapsed / 1000000) + " ms ("
+            + (long)(count * 1e9 / Math.max(elapsed, 1)) + " puzzles/second)");
+        if (packed != null && packed.solutions) {
+            System.err.println(out.differ + " solutions differ from "
+                + file);
+        }
+        if (cache != null) {
+            System.err.println(cache);
+            if (cacheFile != null) cache.save(Paths.get(cacheFile));
+        }
+        if (SolverStats.ENABLED) System.err.println(total);
+    }
+
+    /**
+     * solves the boards one after another on the calling thread; returns the
+     * number of boards read.
+     */
+    static long solveSequential(String engine, boolean unique,
+            BufferedReader in, PackedFormat.Reader packed, Output out)
+            throws IOException {
+        Worker worker = new Worker(engine, unique, out.text(), timeout,
+            budget, cache);
+        long count = 0;
+        Chunk chunk = new Chunk();
+        while (chunk.read(in, packed) > 0) {
+            count += chunk.count;
+            worker.solveAll(chunk);
+            out.write(chunk);
+        }
+        total.add(worker.stats);
+        return count;
+    }
+
+    /**
+     * solves the boards in chunks on the given number of threads and writes
+     * the results in input order; returns the number of boards read.
+     */
+    static long solveParallel(String engine, boolean unique, int threads,
+            BufferedReader in, PackedFormat.Reader packed, Output out)
+            throws IOException, InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(
+            () -> new Worker(engine, unique, out.text(), timeout, budget,
+                cache));
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        ArrayDeque<Chunk> free = new ArrayDeque<>(); // written, for reuse
+        long count = 0;
+        try {
+            while (true) {
+                Chunk chunk = (free.isEmpty() ? new Chunk()
+                    : free.removeFirst());
+                if (chunk.read(in, packed) == 0) break;
+                count += chunk.count;
+                if (pending.size() == threads * CHUNKS_PER_THREAD) {
+                    Chunk done = pending.removeFirst().get();
+                    out.write(done);
+                    free.addLast(done);
+                }
+                pending.addLast(pool.submit(() -> {
+                    Worker worker = workers.get();
+                    worker.solveAll(chunk);
+                    if (SolverStats.ENABLED) {
+                        total.add(worker.stats);
+                        worker.stats.clear();
+                    }
+                    return chunk;
+                }));
+            }
+            while (!pending.isEmpty()) {
+                out.write(pending.removeFirst().get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return count;
+    }
+
+    static void write(String[] results, PrintWriter out) {
+        for (String result : results) {
+            if (result == null) break;
+            out.println(result);
+        }
+    }
+
+    /**
+     * creates a solver of the given engine.
+     */
+    static Solver newSolver(String engine, int[] puzzle) {
+        Solver solver;
+        if (engine.equals("bitmask")) {
+            solver = new BitmaskSolver(puzzle, "BitmaskSolver");
+        } else if (engine.equals("arraydlx")) {
+            solver = new ArrayDancingLinksSolver(puzzle,
+                "ArrayDancingLinksSolver");
+        } else if (engine.equals("arraydlx-last")) {
+            ArrayDancingLinksSolver dlx = new ArrayDancingLinksSolver(puzzle,
+                "ArrayDancingLinksSolver");
+            dlx.lastOfSize = true;
+            solver = dlx;
+        } else if (engine.equals("portfolio")) {
+            PortfolioSolver portfolio = new PortfolioSolver(puzzle,
+                "PortfolioSolver");
+            portfolio.ranking = ranking;
+            solver = portfolio;
+        } else if (engine.equals("paralleldlx")) {
+            solver = new ParallelDancingLinksSolver(puzzle,
+                "ParallelDancingLinksSolver");
+        } else if (engine.equals("dlx")) {
+            solver = new DancingLinksSolver(puzzle, "DancingLinksSolver");
+        } else if (engine.equals("2d")) {
+            solver = new Simple2DBacktrackSolver(puzzle,
+                "Simple2DBacktrackSolver");
+        } else if (engine.equals("1d")) {
+            solver = new Simple1DBacktrackSolver(puzzle,
+                "Simple1DBacktrackSolver");
+        } else {
+            throw new IllegalArgumentException("unknown engine: " + engine);
+        }
+        return solver;
+    }
+
+    /**
+     * Solves boards one at a time with a solver of its own that is reset for
+     * each board; a worker is confined to a single thread.
+     *
+     * With the lanes engine, the boards of a chunk are first propagated
+     * together in a LaneBatch per size, and only the boards propagation
+     * leaves open are searched one at a time, by the bitmask engine.
+     **/
+    static class Worker {
+        String engine;
+        boolean unique; // check that the solution is unique
+        boolean text; // replace the boards of a chunk by output lines
+        boolean lanes; // propagate the boards of a chunk together first
+        long timeout; // milliseconds per board; zero for any
+        long budget; // search nodes per board; zero for any
+        SolutionCache cache; // in front of the solver; null for none
+        Solver solver;
+        SolutionCollector collector = SolutionCollector.first();
+        SolverStats stats = new SolverStats(); // of the boards solved so far
+        HashMap<Integer, LaneBatch> batches = new HashMap<>(); // by size
+
+        Worker(String engine, boolean unique, boolean text, long timeout,
+                long budget, SolutionCache cache) {
+            this.engine = engine;
+            this.unique = unique;
+            this.text = text;
+            this.timeout = timeout;
+            this.budget = budget;
+            this.cache = cache;
+            if (engine.equals("lanes")) {
+                lanes = true;
+                this.engine = "bitmask";
+            }
+        }
+
+        /**
+         * solves the boards of the chunk, parsing them first if they were
+         * read as text, compares the results with the solutions read with
+         * the boards and, for text output, replaces the lines of the chunk
+         * by the output lines.
+         */
+        void solveAll(Chunk chunk) {
+            int count = chunk.count;
+            for (int i = 0; i < count; i++) {
+                chunk.results[i] = SOLVED;
+                if (chunk.packed) continue;
+                try {
+                    chunk.puzzles[i] = PuzzleFormat.parse(chunk.lines[i],
+                        chunk.puzzles[i]);
+                } catch (IllegalArgumentException iae) {
+                    chunk.results[i] = INVALID;
+                    chunk.lines[i] = "invalid puzzle: " + iae.getMessage();
+                }
+            }
+            if (lanes) {
+                solveLanes(chunk);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    if (chunk.results[i] == INVALID) continue;
+                    solve(chunk, i, chunk.puzzles[i]);
+                }
+            }
+            chunk.differ = 0;
+            for (int i = 0; i < count; i++) {
+                int result = chunk.results[i];
+                if (result == INVALID) continue;
+                if (chunk.expected != null
+                        && !PackedFormat.isEmpty(chunk.expected[i])
+                        && (result != SOLVED || !java.util.Arrays.equals(
+                            chunk.solutions[i], chunk.expected[i]))) {
+                    chunk.differ++;
+                }
+                if (text) {
+                    chunk.lines[i] = output(result, chunk.solutions[i],
+                        chunk.packed || PuzzleFormat.isCompact(chunk.lines[i]));
+                }
+            }
+        }
+
+        /**
+         * propagates the boards of the chunk in batches of LaneBatch.LANES
+         * boards of the same size and searches those left open.
+         */
+        void solveLanes(Chunk chunk) {
+            int count = chunk.count;
+            boolean[] pending = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                pending[i] = (chunk.results[i] != INVALID);
+            }
+            int[] block = new int[LaneBatch.LANES];
+            for (int i = 0; i < count; i++) {
+                if (!pending[i]) continue;
+                int cells = chunk.puzzles[i].length;
+                int size = (int)Math.sqrt(cells);
+                if (size > 32) {
+                    pending[i] = false;
+                    solve(chunk, i, chunk.puzzles[i]);
+                    continue;
+                }
+                LaneBatch batch = batches.get(size);
+                if (batch == null) {
+                    batch = LaneBatch.create(size);
+                    batches.put(size, batch);
+                }
+                int n = 0;
+                for (int j = i; j < count && n < batch.lanes; j++) {
+                    if (pending[j] && chunk.puzzles[j].length == cells) {
+                        block[n++] = j;
+                        pending[j] = false;
+                    }
+                }
+                for (int l = 0; l < batch.lanes; l++) {
+                    if (l < n) {
+                        batch.load(l, chunk.puzzles[block[l]]);
+                    } else {
+                        batch.clear(l);
+                    }
+                }
+                batch.propagate();
+                for (int l = 0; l < n; l++) {
+                    int j = block[l];
+                    int[] solution = chunk.solution(j);
+                    int result = batch.result(l, solution);
+                    if (result == LaneBatch.NO_SOLUTION) {
+                        chunk.results[j] = Solver.NO_SOLUTION;
+                    } else if (result == LaneBatch.SOLVED) {
+                        stats.solution();
+                        chunk.results[j] = SOLVED;
+                    } else {
+                        // the solver copies the board before writing to it
+                        solve(chunk, j, solution);
+                    }
+                }
+            }
+        }
+
+        /**
+         * solves board i of the chunk, starting from the given board, and
+         * sets its result. A board the engine cannot take, such as one too
+         * large for it, is INVALID with the reason as its output line.
+         */
+        void solve(Chunk chunk, int i, int[] puzzle) {
+            try {
+                chunk.results[i] = solve(puzzle, chunk.solution(i));
+            } catch (IllegalArgumentException iae) {
+                solver = null; // may be left half reset
+                collector.clear();
+                chunk.results[i] = INVALID;
+                chunk.lines[i] = "invalid puzzle: " + iae.getMessage();
+            }
+        }
+
+        /**
+         * solves the board and copies its first solution, or with -unique
+         * its only one, to the given array; returns SOLVED, or
+         * Solver.NO_SOLUTION, MULTIPLE or TIMED_OUT.
+         */
+        int solve(int[] puzzle, int[] solution) {
+            if (solver == null) {
+                solver = newSolver(engine, puzzle);
+                if (cache != null) {
+                    solver = new CachingSolver(puzzle, solver, cache);
+                }
+                solver.setListener(collector);
+                solver.setTimeLimit(timeout, TimeUnit.MILLISECONDS);
+                solver.setNodeBudget(budget);
+            } else {
+                solver.reset(puzzle);
+                collector.clear();
+            }
+            int[] found;
+            if (unique) {
+                int result = solver.checkUniqueness();
+                if (SolverStats.ENABLED) stats.add(solver.stats);
+                if (result != Solver.UNIQUE) return result;
+                found = solver.getSolution();
+            } else {
+                solver.solve();
+                if (SolverStats.ENABLED) stats.add(solver.stats);
+                if (collector.getCount() == 0) {
+                    return (solver.isTimedOut() ? Solver.TIMED_OUT
+                        : Solver.NO_SOLUTION);
+                }
+                found = collector.getFirst();
+            }
+            System.arraycopy(found, 0, solution, 0, solution.length);
+            return SOLVED;
+        }
+    }
+
+    /**
+     * returns the output line of a board with the given result.
+     */
+    static String output(int result, int[] solution, boolean compact) {
+        if (result == Solver.NO_SOLUTION) return "no solution";
+        if (result == Solver.MULTIPLE) return "multiple solutions";
+        if (result == Solver.TIMED_OUT) return "timed out";
+        return PuzzleFormat.format(solution, compact);
+    }
+
+    /**
+     * The boards solved by one task, read as text lines or from a packed
+     * file, with their results. The arrays are reused when the chunk is
+     * read again.
+     **/
+    static class Chunk {
+        int count; // boards in the chunk
+        boolean packed; // read from a packed file rather than as lines
+        String[] lines = new String[CHUNK_SIZE]; // input, then output lines
+        int[][] puzzles = new int[CHUNK_SIZE][]; // the boards, row by row
+        int[][] solutions = new int[CHUNK_SIZE][]; // the first solutions
+        int[][] expected; // solutions read with the boards; null if none
+        int[] results = new int[CHUNK_SIZE]; // SOLVED, INVALID or as Solver
+        int differ; // boards solved otherwise than expected
+
+        /**
+         * reads up to CHUNK_SIZE boards from the packed file, if given, or
+         * else the lines of the reader, skipping blank lines and comments;
+         * returns the number of boards read.
+         */
+        int read(BufferedReader in, PackedFormat.Reader packed)
+                throws IOException {
+            count = 0;
+            this.packed = (packed != null);
+            if (packed == null) {
+                expected = null;
+                String line;
+                while (count < CHUNK_SIZE && (line = in.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    lines[count++] = line;
+                }
+                return count;
+            }
+            int cells = packed.size * packed.size;
+            if (packed.solutions && expected == null) {
+                expected = new int[CHUNK_SIZE][];
+            }
+            while (count < CHUNK_SIZE) {
+                if (puzzles[count] == null || puzzles[count].length != cells) {
+                    puzzles[count] = new int[cells];
+                }
+                int[] solution = null;
+                if (expected != null) {
+                    if (expected[count] == null) {
+                        expected[count] = new int[cells];
+                    }
+                    solution = expected[count];
+                }
+                if (!packed.next(puzzles[count], solution)) break;
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * returns the array for the solution of board i.
+         */
+        int[] solution(int i) {
+            int cells = puzzles[i].length;
+            if (solutions[i] == null || solutions[i].length != cells) {
+                solutions[i] = new int[cells];
+            }
+            return solutions[i];
+        }
+    }
+
+    /**
+     * Writes the results of the chunks in order: the output lines to
+     * sysout or, with -out, the boards and their solutions to a packed file,
+     * with none recorded for the boards not solved. Boards that could not be
+     * parsed are left out of a packed file and reported on syserr.
+     **/
+    static class Output {
+        Path file; // the packed file; null for text
+        PrintWriter lines = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out)));
+        PackedFormat.Writer packed; // created for the first board
+        long written; // boards written so far
+        long differ; // boards solved otherwise than expected
+
+        Output(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * returns true if the output is text.
+         */
+        boolean text() {
+            return file == null;
+        }
+
+        void write(Chunk chunk) throws IOException {
+            differ += chunk.differ;
+            for (int i = 0; i < chunk.count; i++) {
+                written++;
+                if (file == null) {
+                    lines.println(chunk.lines[i]);
+                } else if (chunk.results[i] == INVALID) {
+                    System.err.println("board " + written + " not written: "
+                        + chunk.lines[i]);
+                } else {
+                    int[] puzzle = chunk.puzzles[i];
+                    try {
+                        if (packed == null) {
+                            packed = new PackedFormat.Writer(file,
+                                (int)Math.sqrt(puzzle.length), true);
+                        }
+                        packed.write(puzzle, chunk.results[i] == SOLVED
+                            ? chunk.solutions[i] : null);
+                    } catch (IllegalArgumentException iae) {
+                        // another size than the first board, or too large
+                        System.err.println("board " + written
+                            + " not written: " + iae.getMessage());
+                    }
+                }
+            }
+        }
+
+        void close() throws IOException {
+            lines.flush();
+            if (packed != null) packed.close();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * The BitmaskSolver class solves a sudoku board by back-tracking over
+ * candidate bitmasks kept for every row, column and region.
+ *
+ * The masks are longs, so boards of up to 64x64 are supported. Bit (k - 1)
+ * of a mask is set when the number k is placed in that row,
+ * column or region, so the candidates of a position are found with a few
+ * bit operations and placing or removing a number is O(1). Before branching
+ * the solver fills in naked singles (positions with one candidate left) and
+ * hidden singles (numbers with one position left in a row, column or
+ * region), and then branches on the position with the fewest candidates.
+ **/
+public class BitmaskSolver extends Solver {
+    int[] cells; // numbers placed so far, row by row; zero when empty
+    long[] rowUsed; // numbers placed in each row
+    long[] colUsed; // numbers placed in each column
+    long[] boxUsed; // numbers placed in each region
+    int[] rowOf; // row of each position
+    int[] colOf; // column of each position
+    int[] boxOf; // region of each position
+    int[][] units; // positions in each row, column and region
+    long all; // mask with a bit for each number
+
+    // empty positions; the first emptyCount entries are still to be filled
+    // and emptyIndex maps each position to its entry
+    int[] empty;
+    int[] emptyIndex;
+    int emptyCount;
+
+    // positions placed during the search, undone in reverse order
+    int[] trail;
+    int trailSize;
+    boolean conflict; // set when the givens contradict each other
+    boolean hiddenSingles = true; // look for hidden singles when propagating
+
+    public BitmaskSolver(String[] input, String name) {
+        this(parseInput(input), name);
+    }
+
+    public BitmaskSolver(int[] puzzle, String name) {
+        super(puzzle, name);
+        init2DArray(puzzle);
+        initMasks();
+    }
+
+    @Override
+    public void reset(int[] puzzle) {
+        super.reset(puzzle);
+        initMasks();
+    }
+
+    /**
+     * sets up the masks and lookup tables from the board; the tables are
+     * reused when the size of the board is unchanged.
+     **/
+    void initMasks() {
+        long start = stats.start();
+        int cells = size * size;
+        if (size > 64) {
+            throw new IllegalArgumentException("board too large for "
+                + name + ": " + size + "x" + size);
+        }
+        conflict = false;
+        trailSize = 0;
+        if (this.cells != null && this.cells.length == cells) {
+            java.util.Arrays.fill(this.cells, 0);
+            java.util.Arrays.fill(rowUsed, 0);
+            java.util.Arrays.fill(colUsed, 0);
+            java.util.Arrays.fill(boxUsed, 0);
+            for (int p = 0; p < cells; p++) {
+                empty[p] = p;
+                emptyIndex[p] = p;
+            }
+            emptyCount = cells;
+            placeGivens();
+            stats.built(start);
+            return;
+        }
+        this.cells = new int[cells];
+        rowUsed = new long[size];
+        colUsed = new long[size];
+        boxUsed = new long[size];
+        rowOf = new int[cells];
+        colOf = new int[cells];
+        boxOf = new int[cells];
+        units = new int[3 * size][size];
+        empty = new int[cells];
+        emptyIndex = new int[cells];
+        trail = new int[cells];
+        all = (size == 64 ? -1L : (1L << size) - 1);
+
+        int[] unitFill = new int[3 * size];
+        for (int p = 0; p < cells; p++) {
+            rowOf[p] = p / size;
+            colOf[p] = p % size;
+            boxOf[p] = LinkedListBuilder.getRegion(rowOf[p], colOf[p], size);
+            units[rowOf[p]][unitFill[rowOf[p]]++] = p;
+            units[size + colOf[p]][unitFill[size + colOf[p]]++] = p;
+            units[2 * size + boxOf[p]][unitFill[2 * size + boxOf[p]]++] = p;
+            empty[p] = p;
+            emptyIndex[p] = p;
+        }
+        emptyCount = cells;
+        placeGivens();
+        stats.built(start);
+    }
+
+    /**
+     * places the numbers given on the board; these are never undone.
+     **/
+    void placeGivens() {
+        for (int p = 0; p < cells.length; p++) {
+            int k = board[p / size][p % size];
+            if (k == 0) continue;
+            if (k < 0 || k > size) {
+                conflict = true;
+                continue;
+            }
+            long bit = 1L << (k - 1);
+            if (((rowUsed[rowOf[p]] | colUsed[colOf[p]] | boxUsed[boxOf[p]])
+                    & bit) != 0) {
+                conflict = true;
+            }
+            place(p, bit);
+        }
+        trailSize = 0;
+    }
+
+    public void solve() {
+        long start = stats.start();
+        startRun();
+        if (!conflict) search();
+        stats.searched(start);
+    }
+
+    /**
+     * fills in the singles and then tries each candidate of the position
+     * with the fewest candidates; all placements made at this level are
+     * undone before returning. Returns true if the search should stop and
+     * false otherwise; a search stopped by the node limit or the budget is
+     * abandoned, as the recursion cannot be suspended, and counts as timed
+     * out, so that its solutions are not taken for all of them.
+     **/
+    boolean search() {
+        stats.enter();
+        boolean stop = nodeVisited();
+        if (stop && !timedOut) { // at the node limit
+            timedOut = true;
+            stats.timeout();
+        }
+        int mark = trailSize;
+        if (!stop && propagate()) {
+            int best = -1;
+            int bestCount = Integer.MAX_VALUE;
+            for (int e = 0; e < emptyCount; e++) {
+                int count = Long.bitCount(candidates(empty[e]));
+                if (count < bestCount) {
+                    bestCount = count;
+                    best = empty[e];
+                    if (count == 2) break;
+                }
+            }
+            if (best < 0) {
+                stop = !foundSolution();
+            } else {
+                long cand = candidates(best);
+                while (cand != 0 && !stop) {
+                    long bit = cand & -cand;
+                    cand ^= bit;
+                    place(best, bit);
+                    stop = search();
+                    undo(trailSize - 1);
+                    if (!stop) stats.backtrack();
+                }
+            }
+        }
+        undo(mark);
+        stats.leave();
+        return stop;
+    }
+
+    /**
+     * repeatedly places naked and hidden singles until none are left;
+     * returns false if a position or a number has no candidates left.
+     * Hidden singles are skipped when hiddenSingles is cleared.
+     **/
+    boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            // naked singles
+            for (int e = 0; e < emptyCount; e++) {
+                int p = empty[e];
+                long cand = candidates(p);
+                if (cand == 0) return false;
+                if ((cand & (cand - 1)) == 0) {
+                    place(p, cand);
+                    stats.propagation();
+                    e--; // the last empty position was moved to this entry
+                    changed = true;
+                }
+            }
+            // hidden singles, once the cheaper naked singles are exhausted
+            if (changed) continue;
+            for (int u = 0; u < units.length && hiddenSingles; u++) {
+                long once = 0;
+                long twice = 0;
+                long used = 0;
+                for (int p : units[u]) {
+                    if (cells[p] != 0) {
+                        used |= 1L << (cells[p] - 1);
+                        continue;
+                    }
+                    long cand = candidates(p);
+                    twice |= once & cand;
+                    once |= cand;
+                }
+                if ((once | used) != all) return false;
+                long hidden = once & ~twice;
+                if (hidden == 0) continue;
+                for (int p : units[u]) {
+                    if (cells[p] != 0) continue;
+                    long cand = candidates(p) & hidden;
+                    if (cand == 0) continue;
+                    if ((cand & (cand - 1)) != 0) return false;
+                    place(p, cand);
+                    stats.propagation();
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    long candidates(int p) {
+        return ~(rowUsed[rowOf[p]] | colUsed[colOf[p]] | boxUsed[boxOf[p]])
+            & all;
+    }
+
+    /**
+     * places the number given by the single bit in the mask at position p.
+     **/
+    void place(int p, long bit) {
+        cells[p] = Long.numberOfTrailingZeros(bit) + 1;
+        rowUsed[rowOf[p]] |= bit;
+        colUsed[colOf[p]] |= bit;
+        boxUsed[boxOf[p]] |= bit;
+
+        // swap the position with the last empty one
+        int e = emptyIndex[p];
+        int last = empty[--emptyCount];
+        empty[e] = last;
+        emptyIndex[last] = e;
+        empty[emptyCount] = p;
+        emptyIndex[p] = emptyCount;
+
+        trail[trailSize++] = p;
+    }
+
+    /**
+     * removes the placements made since the trail had the given size.
+     **/
+    void undo(int mark) {
+        while (trailSize > mark) {
+            int p = trail[--trailSize];
+            long bit = ~(1L << (cells[p] - 1));
+            cells[p] = 0;
+            rowUsed[rowOf[p]] &= bit;
+            colUsed[colOf[p]] &= bit;
+            boxUsed[boxOf[p]] &= bit;
+            // positions are restored in reverse order, so p still sits at
+            // the entry it was swapped to and only the count needs to grow
+            emptyCount++;
+        }
+    }
+
+    /**
+     * removes the given number at position p, so that it is searched like
+     * any other empty position; the trail must be empty.
+     **/
+    void removeGiven(int p) {
+        long bit = ~(1L << (cells[p] - 1));
+        cells[p] = 0;
+        rowUsed[rowOf[p]] &= bit;
+        colUsed[colOf[p]] &= bit;
+        boxUsed[boxOf[p]] &= bit;
+
+        // swap the position with the first filled one and count it as empty
+        int e = emptyIndex[p];
+        int first = empty[emptyCount];
+        empty[e] = first;
+        emptyIndex[first] = e;
+        empty[emptyCount] = p;
+        emptyIndex[p] = emptyCount;
+        emptyCount++;
+    }
+
+    /**
+     * places the number k at the empty position p as a given; the trail
+     * must be empty.
+     **/
+    void addGiven(int p, int k) {
+        place(p, 1L << (k - 1));
+        trailSize = 0;
+    }
+
+    /**
+     * returns true if the board has a solution with a number other than k at
+     * the empty position p. When the board is known to be solvable with k at
+     * p, false means that its solution is unique; this needs a single search
+     * for the first solution instead of a search for the second one. A
+     * search that times out returns false with isTimedOut set.
+     **/
+    boolean hasOtherSolution(int p, int k) {
+        SolutionListener saved = listener;
+        listener = found -> false;
+        boolean found = false;
+        startRun();
+        try {
+            long cand = candidates(p) & ~(1L << (k - 1));
+            while (cand != 0 && !found && !timedOut) {
+                long bit = cand & -cand;
+                cand ^= bit;
+                place(p, bit);
+                found = search() && !timedOut;
+                undo(trailSize - 1);
+            }
+        } finally {
+            listener = saved;
+        }
+        return found;
+    }
+
+    @Override
+    void updateBoard() {
+        for (int p = 0; p < cells.length; p++) {
+            board[p / size][p % size] = cells[p];
+        }
+    }
+
+    @Override
+    void copySolution(int[] dest) {
+        System.arraycopy(cells, 0, dest, 0, cells.length);
+    }
+}
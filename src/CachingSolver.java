@@ -0,0 +1,148 @@
+/**
+ * The CachingSolver answers boards from a SolutionCache and passes the ones
+ * it does not hold to another solver. Boards are looked up in the canonical
+ * form of CanonicalForm, so a board that is a relabeled, transposed or
+ * otherwise permuted copy of one solved before is a hit too; the cached
+ * solutions are turned back into solutions of the board before they are
+ * passed to the listener.
+ *
+ * On a miss the solver searches the board and the first two solutions it
+ * finds are cached, with whether the search showed them to be all. A hit
+ * passes the cached solutions on and, if the listener asks for more than
+ * the cache knows, the board is searched after all, skipping the solutions
+ * already passed on; so the listener sees the same solutions as with the
+ * solver alone, though not always in the same order.
+ *
+ * The time limit and node budget of this solver are passed on to the
+ * solver; a search that times out caches only the solutions it found.
+ **/
+public class CachingSolver extends Solver {
+    Solver solver; // searches the boards the cache cannot answer
+    SolutionCache cache; // may be shared with other threads
+    CanonicalForm form = new CanonicalForm();
+    int[] puzzle; // the board being solved, row by row
+    int[] canonical; // a solution of the canonical board
+    SolutionCache.Key key; // the canonical board; null if not cached
+
+    // the solutions passed on from the cache, skipped by the search, and
+    // those the search found, in the canonical form
+    int[][] reported = new int[SolutionCache.MAX_SOLUTIONS][];
+    int reportedCount;
+    byte[][] found = new byte[SolutionCache.MAX_SOLUTIONS][];
+    int foundCount; // solutions found by the search, also those not kept
+    boolean stopped; // the listener stopped the search
+
+    public CachingSolver(int[] puzzle, Solver solver, SolutionCache cache) {
+        super(puzzle, "CachingSolver");
+        init2DArray(puzzle);
+        this.puzzle = puzzle.clone();
+        this.solver = solver;
+        this.cache = cache;
+        solver.setListener(this::searched);
+    }
+
+    @Override
+    public void reset(int[] puzzle) {
+        super.reset(puzzle);
+        this.puzzle = puzzle.clone();
+    }
+
+    public void solve() {
+        long start = stats.start();
+        reportedCount = 0;
+        key = null;
+        if (size > 255) { // the cache keeps a byte per position
+            search(null);
+            stats.searched(start);
+            return;
+        }
+        form.canonicalize(puzzle);
+        key = new SolutionCache.Key(SolutionCache.pack(form.board));
+        SolutionCache.Entry entry = cache.get(key);
+        if (entry != null) {
+            if (canonical == null || canonical.length != puzzle.length) {
+                canonical = new int[puzzle.length];
+            }
+            for (byte[] solution : entry.solutions) {
+                SolutionCache.unpack(solution, canonical);
+                int[] grid = reported[reportedCount];
+                if (grid == null || grid.length != puzzle.length) {
+                    grid = reported[reportedCount] = new int[puzzle.length];
+                }
+                form.restore(canonical, grid);
+                reportedCount++;
+                if (!report(grid)) {
+                    stats.searched(start);
+                    return;
+                }
+            }
+            if (entry.complete) {
+                stats.searched(start);
+                return;
+            }
+        }
+        search(entry);
+        stats.searched(start);
+    }
+
+    /**
+     * searches the board with the solver and caches the solutions found
+     * unless the cache already knows as much as the given entry, if any.
+     */
+    void search(SolutionCache.Entry entry) {
+        solver.reset(puzzle);
+        solver.setTimeLimit(timeLimit,
+            java.util.concurrent.TimeUnit.NANOSECONDS);
+        solver.setNodeBudget(nodeBudget);
+        foundCount = 0;
+        stopped = false;
+        solver.solve();
+        nodes += solver.nodes;
+        stats.add(solver.stats);
+        timedOut = solver.isTimedOut();
+        if (key == null) return;
+
+        int kept = Math.min(foundCount, SolutionCache.MAX_SOLUTIONS);
+        boolean complete = !stopped && !timedOut
+            && foundCount <= SolutionCache.MAX_SOLUTIONS;
+        if (complete || kept > (entry == null ? 0 : entry.solutions.length)) {
+            byte[][] solutions = new byte[kept][];
+            System.arraycopy(found, 0, solutions, 0, kept);
+            cache.put(key, new SolutionCache.Entry(solutions, complete));
+        }
+    }
+
+    /**
+     * called by the solver for each solution found; keeps the first ones
+     * for the cache and passes on those not already passed on from it.
+     */
+    boolean searched(int[] grid) {
+        if (key != null && foundCount < SolutionCache.MAX_SOLUTIONS) {
+            if (canonical == null || canonical.length != grid.length) {
+                canonical = new int[grid.length];
+            }
+            form.transform(grid, canonical);
+            found[foundCount] = SolutionCache.pack(canonical);
+        }
+        foundCount++;
+        for (int r = 0; r < reportedCount; r++) {
+            if (java.util.Arrays.equals(grid, reported[r])) return true;
+        }
+        if (!report(grid)) {
+            stopped = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * passes a solution of the board to the listener; returns false when
+     * the search should stop.
+     */
+    boolean report(int[] grid) {
+        for (int p = 0; p < grid.length; p++) {
+            board[p / size][p % size] = grid[p];
+        }
+        return foundSolution();
+    }
+}
@@ -0,0 +1,400 @@
+/**
+ * Maps a board to a canonical form under the symmetries of sudoku: the
+ * numbers relabeled, the rows permuted within their bands and the bands
+ * permuted, the same for the columns and stacks, and, when the regions are
+ * square, the board transposed. Boards that one of these turns into another
+ * have the same canonical form, and a solution of the canonical board is
+ * turned into a solution of the board by restore.
+ *
+ * Trying all of the transforms, 2 * 6^8 for a 9x9 board, would cost far
+ * more than solving. Instead the rows, bands, columns and stacks are ordered
+ * by keys that the symmetries leave unchanged: hashes of how many givens a
+ * line, region and number has, refined once by the keys of the crossing
+ * lines. Only lines, bands or stacks whose keys are equal are tried in every
+ * order, and the numbers are relabeled in the order they are first met, row
+ * by row; the canonical form is the smallest of the boards so obtained,
+ * comparing position by position. For most boards a few orders remain.
+ *
+ * When the ties allow more than MAX_ORDERS orders, e.g. for a nearly empty
+ * board, they are broken by position instead. The form is then still the
+ * board transformed, and restore still correct, but boards that are
+ * equivalent may get different forms.
+ *
+ * A CanonicalForm keeps its arrays from board to board and is confined to
+ * a single thread.
+ **/
+public class CanonicalForm {
+    static final int MAX_ORDERS = 256; // orders tried before breaking ties
+    static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    int size; // length/breadth of the board
+    int boxRows; // number of rows in a region/box
+    int boxCols; // number of columns in a region/box
+    int[] board; // the canonical board, row by row
+    int[] position; // position of the board at each canonical position
+    int[] label; // canonical number of each number of the board
+    int[] number; // number of the board of each canonical number
+
+    int[] transposed; // the board transposed
+    int[] rowOf; // row of each position
+    int[] colOf; // column of each position
+    int[] boxOf; // region of each position
+
+    // the keys of the board in the orientation being tried
+    int[] count; // givens of each number
+    int[] rowCount;
+    int[] colCount;
+    int[] boxCount;
+    int[] given; // positions of the givens
+    long[] cellKey; // key of each given
+    long[] rowFirst; // the keys of the first round
+    long[] colFirst;
+    long[] rowKey;
+    long[] colKey;
+    long[] bandKey;
+    long[] stackKey;
+    long[] rowKeys; // the row keys, sorted, to choose the orientation
+    long[] colKeys;
+
+    // the order tried: the bands, then the rows within each band, by band,
+    // then the stacks, then the columns within each stack, by stack; and
+    // the pieces whose keys tie, as pairs of start and end
+    int[] order;
+    int[] ties;
+    int tieCount;
+
+    // the order being built and the best board so far
+    int[] rows;
+    int[] cols;
+    int[] candidate;
+    int[] candidatePosition;
+    int[] candidateLabel;
+    boolean found; // a board was found for this orientation or an earlier one
+
+    /**
+     * computes the canonical form of the board; afterwards board holds the
+     * form and position and label the transform.
+     */
+    void canonicalize(int[] puzzle) {
+        setSize(puzzle.length);
+        int n = size;
+        found = false;
+        computeKeys(puzzle);
+        int cmp = -1;
+        if (boxRows == boxCols) {
+            // the row keys of the transpose are the column keys
+            System.arraycopy(rowKey, 0, rowKeys, 0, n);
+            System.arraycopy(colKey, 0, colKeys, 0, n);
+            java.util.Arrays.sort(rowKeys);
+            java.util.Arrays.sort(colKeys);
+            cmp = java.util.Arrays.compare(rowKeys, colKeys);
+        }
+        if (cmp <= 0) search(puzzle, false);
+        if (cmp >= 0) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    transposed[j * n + i] = puzzle[i * n + j];
+                }
+            }
+            computeKeys(transposed);
+            search(transposed, true);
+        }
+        for (int k = 1; k <= n; k++) {
+            number[label[k]] = k;
+        }
+    }
+
+    /**
+     * turns a solution of the canonical board into one of the board last
+     * canonicalized.
+     */
+    void restore(int[] canonical, int[] solution) {
+        for (int p = 0; p < canonical.length; p++) {
+            solution[position[p]] = number[canonical[p]];
+        }
+    }
+
+    /**
+     * turns a solution of the board last canonicalized into one of the
+     * canonical board.
+     */
+    void transform(int[] solution, int[] canonical) {
+        for (int p = 0; p < canonical.length; p++) {
+            canonical[p] = label[solution[position[p]]];
+        }
+    }
+
+    void setSize(int cells) {
+        if (board != null && board.length == cells) return;
+        int n = (int)Math.sqrt(cells);
+        size = n;
+        boxRows = Solver.boxRows(n);
+        boxCols = n / boxRows;
+        board = new int[cells];
+        position = new int[cells];
+        label = new int[n + 1];
+        number = new int[n + 1];
+        transposed = new int[cells];
+        count = new int[n + 1];
+        rowCount = new int[n];
+        colCount = new int[n];
+        boxCount = new int[n];
+        rowFirst = new long[n];
+        colFirst = new long[n];
+        rowKey = new long[n];
+        colKey = new long[n];
+        bandKey = new long[n / boxRows];
+        stackKey = new long[n / boxCols];
+        rowKeys = new long[n];
+        colKeys = new long[n];
+        order = new int[2 * n + n / boxRows + n / boxCols];
+        ties = new int[order.length];
+        rows = new int[n];
+        cols = new int[n];
+        candidate = new int[cells];
+        candidatePosition = new int[cells];
+        candidateLabel = new int[n + 1];
+        given = new int[cells];
+        cellKey = new long[cells];
+        rowOf = new int[cells];
+        colOf = new int[cells];
+        boxOf = new int[cells];
+        for (int p = 0; p < cells; p++) {
+            rowOf[p] = p / n;
+            colOf[p] = p % n;
+            boxOf[p] = (p / n / boxRows) * boxRows + p % n / boxCols;
+        }
+    }
+
+    /**
+     * computes the keys of the rows, columns, bands and stacks of the board:
+     * each given is hashed with the number of givens of its number and of
+     * its region, and a row key sums those hashes combined with the key of
+     * the column of each given, in two rounds; columns likewise.
+     */
+    void computeKeys(int[] grid) {
+        int n = size;
+        java.util.Arrays.fill(count, 0);
+        java.util.Arrays.fill(rowCount, 0);
+        java.util.Arrays.fill(colCount, 0);
+        java.util.Arrays.fill(boxCount, 0);
+        // givens and empty positions mix unpredictably, so the positions are
+        // collected without a branch: -k >>> 31 is 1 for a given, else 0
+        int givens = 0;
+        for (int p = 0; p < grid.length; p++) {
+            given[givens] = p;
+            givens += -grid[p] >>> 31;
+        }
+        for (int g = 0; g < givens; g++) {
+            int p = given[g];
+            count[grid[p]]++;
+            rowCount[rowOf[p]]++;
+            colCount[colOf[p]]++;
+            boxCount[boxOf[p]]++;
+        }
+        java.util.Arrays.fill(rowFirst, 0);
+        java.util.Arrays.fill(colFirst, 0);
+        for (int g = 0; g < givens; g++) {
+            int p = given[g];
+            int i = rowOf[p];
+            int j = colOf[p];
+            long cell = mix(count[grid[p]], boxCount[boxOf[p]]);
+            cellKey[g] = cell;
+            rowFirst[i] += mix(cell, colCount[j]);
+            colFirst[j] += mix(cell, rowCount[i]);
+        }
+        java.util.Arrays.fill(rowKey, 0);
+        java.util.Arrays.fill(colKey, 0);
+        for (int g = 0; g < givens; g++) {
+            int p = given[g];
+            int i = rowOf[p];
+            int j = colOf[p];
+            rowKey[i] += mix(cellKey[g], colFirst[j]);
+            colKey[j] += mix(cellKey[g], rowFirst[i]);
+        }
+        java.util.Arrays.fill(bandKey, 0);
+        java.util.Arrays.fill(stackKey, 0);
+        for (int i = 0; i < n; i++) {
+            rowKey[i] = mix(rowFirst[i], rowKey[i]);
+            colKey[i] = mix(colFirst[i], colKey[i]);
+            bandKey[i / boxRows] += mix(rowKey[i], 0);
+            stackKey[i / boxCols] += mix(colKey[i], 0);
+        }
+    }
+
+    /**
+     * returns a hash of the two values; a collision only costs time, as
+     * the lines it ties are then tried in both orders.
+     */
+    static long mix(long a, long b) {
+        long h = (a + (b << 32 | b >>> 32)) * GOLDEN;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * tries the orders of the rows and columns of the board, in the given
+     * orientation, that the keys computed for it allow, keeping the
+     * smallest board.
+     */
+    void search(int[] grid, boolean transpose) {
+        int n = size;
+        int bands = n / boxRows;
+        int stacks = n / boxCols;
+        tieCount = 0;
+        long orders = sortPiece(0, bands, bandKey, 0);
+        int at = bands;
+        for (int b = 0; b < bands; b++) {
+            orders *= sortPiece(at, boxRows, rowKey, b * boxRows);
+            at += boxRows;
+        }
+        orders = Math.min(orders, MAX_ORDERS + 1);
+        orders *= sortPiece(at, stacks, stackKey, 0);
+        at += stacks;
+        for (int s = 0; s < stacks; s++) {
+            orders = Math.min(orders, MAX_ORDERS + 1);
+            orders *= sortPiece(at, boxCols, colKey, s * boxCols);
+            at += boxCols;
+        }
+        if (orders > MAX_ORDERS) tieCount = 0; // keep the order by position
+        do {
+            tryOrder(grid, transpose);
+        } while (nextOrder());
+    }
+
+    /**
+     * sorts the indices 0 to (length - 1) by their keys, from base on, into
+     * order from at on, with ties kept in the order of the indices, and
+     * records the runs of equal keys; returns the number of orders the ties
+     * allow, at most MAX_ORDERS + 1.
+     */
+    long sortPiece(int at, int length, long[] keys, int base) {
+        for (int x = 0; x < length; x++) {
+            int y = x;
+            while (y > 0 && keys[base + order[at + y - 1]] > keys[base + x]) {
+                order[at + y] = order[at + y - 1];
+                y--;
+            }
+            order[at + y] = x;
+        }
+        long orders = 1;
+        int start = 0;
+        for (int x = 1; x <= length; x++) {
+            if (x < length && keys[base + order[at + x]]
+                    == keys[base + order[at + start]]) {
+                continue;
+            }
+            for (int g = 2; g <= x - start; g++) {
+                orders = Math.min(orders * g, MAX_ORDERS + 1);
+            }
+            if (x - start > 1) {
+                ties[2 * tieCount] = at + start;
+                ties[2 * tieCount + 1] = at + x;
+                tieCount++;
+            }
+            start = x;
+        }
+        return orders;
+    }
+
+    /**
+     * steps to the next order of the runs of ties, counting like an
+     * odometer; returns false when all have been tried.
+     */
+    boolean nextOrder() {
+        for (int t = 0; t < tieCount; t++) {
+            if (nextPermutation(ties[2 * t], ties[2 * t + 1])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * rearranges order from start to end into the next permutation in
+     * lexicographic order; returns false, leaving the first permutation,
+     * after the last one.
+     */
+    boolean nextPermutation(int start, int end) {
+        int x = end - 2;
+        while (x >= start && order[x] > order[x + 1]) x--;
+        if (x >= start) {
+            int y = end - 1;
+            while (order[y] < order[x]) y--;
+            swap(x, y);
+        }
+        for (int a = x + 1, b = end - 1; a < b; a++, b--) {
+            swap(a, b);
+        }
+        return x >= start;
+    }
+
+    void swap(int x, int y) {
+        int t = order[x];
+        order[x] = order[y];
+        order[y] = t;
+    }
+
+    /**
+     * builds the board for the current order, relabeling the numbers as
+     * they are met, and keeps it if it is smaller than the best so far.
+     */
+    void tryOrder(int[] grid, boolean transpose) {
+        int n = size;
+        int bands = n / boxRows;
+        int stacks = n / boxCols;
+        int r = 0;
+        for (int x = 0; x < bands; x++) {
+            int b = order[x];
+            for (int y = 0; y < boxRows; y++) {
+                rows[r++] = b * boxRows + order[bands + b * boxRows + y];
+            }
+        }
+        int at = bands + n;
+        int c = 0;
+        for (int x = 0; x < stacks; x++) {
+            int s = order[at + x];
+            for (int y = 0; y < boxCols; y++) {
+                cols[c++] = s * boxCols + order[at + stacks + s * boxCols + y];
+            }
+        }
+
+        // numbers not met yet are labeled -1, and an empty position 0, so
+        // that only the first meeting of each number takes a branch
+        java.util.Arrays.fill(candidateLabel, -1);
+        candidateLabel[0] = 0;
+        int next = 0;
+        boolean smaller = !found;
+        for (int i = 0; i < n; i++) {
+            int row = rows[i] * n;
+            for (int j = 0; j < n; j++) {
+                int k = candidateLabel[grid[row + cols[j]]];
+                if (k < 0) {
+                    k = ++next;
+                    candidateLabel[grid[row + cols[j]]] = k;
+                }
+                int p = i * n + j;
+                if (!smaller) {
+                    if (k > board[p]) return;
+                    if (k < board[p]) smaller = true;
+                }
+                candidate[p] = k;
+                candidatePosition[p] = (transpose ? cols[j] * n + rows[i]
+                    : row + cols[j]);
+            }
+        }
+        if (!smaller) return; // the same board again
+
+        // numbers without givens take the remaining labels in order
+        for (int k = 1; k <= n; k++) {
+            if (candidateLabel[k] < 0) candidateLabel[k] = ++next;
+        }
+        int[] t = board;
+        board = candidate;
+        candidate = t;
+        t = label;
+        label = candidateLabel;
+        candidateLabel = t;
+        t = position;
+        position = candidatePosition;
+        candidatePosition = t;
+        found = true;
+    }
+}
@@ -1,93 +1,258 @@
+import java.io.Writer;
+
 /**
  * The DancingLinksSolver converts a sudoko board to a doubly-linked list and
  * solves it using Donald E. Knuth's Dancing Links algorithm.
+ *
+ * The list holds the full matrix for the size of the board and is built
+ * once; the givens are applied by selecting their rows, as the search
+ * selects rows, and the next board first takes back those selections and
+ * whatever the search left selected, which restores the matrix without
+ * building it again.
  **/
-public class DancingLinksSolver extends Solver {
+public class DancingLinksSolver extends ResumableSolver {
     HeaderNode root;
-    Node[] solution;
+    Node[] rows; // first node of each row, at (i * size + j) * size + k - 1
+    Node[] givens; // rows selected for the givens, in order
+    int givenCount;
+    boolean unsolvable; // the givens contradict each other
+    boolean[] satisfied; // work arrays of LinkedListBuilder.applyGivens
+    int[] count;
+    int[] last;
+    Node[] solution; // row tried at each level
+    HeaderNode[] chosen; // column covered at each level
+    int level; // current level of the search
+    boolean fresh; // the current level has yet to choose its column
+    int depth; // number of rows in the solution found
     HeaderNode firstColumn;
     int verbose = 0;
+    Writer trace; // optional sink for the exact cover matrix, for debugging
+    boolean propagate = true; // fill in forced positions before searching
 
     public DancingLinksSolver(String[] input, String name) {
-        super(input, name);
-        init2DArray(input);
+        this(parseInput(input), name);
+    }
+
+    public DancingLinksSolver(int[] puzzle, String name) {
+        super(puzzle, name);
+        init2DArray(puzzle);
     }
 
     public void solve() {
         // initialize the doubly-linked list
-        LinkedListBuilder builder = new LinkedListBuilder();
-        root = builder.buildLinkedList(board);
+        long start = stats.start();
+        int empty = (SolverStats.ENABLED ? emptyPositions() : 0);
+        if (trace != null) {
+            // (for debugging) build the list for this board alone
+            LinkedListBuilder builder = new LinkedListBuilder();
+            builder.trace = trace;
+            builder.propagate = propagate;
+            root = builder.buildLinkedList(board);
+            rows = null;
+            unsolvable = false;
+        } else {
+            buildMatrix();
+        }
+        if (SolverStats.ENABLED) {
+            stats.propagations += empty - emptyPositions();
+        }
+        start = stats.built(start);
 
-        solution = new Node[100];
+        // one level per position at most
+        int levels = size * size + 1;
+        if (solution == null || solution.length < levels) {
+            solution = new Node[levels];
+            chosen = new HeaderNode[levels];
+        }
 
         // search and print all exact covers
         firstColumn = (HeaderNode)root.right;
         //while (startColumn != root) {
-            search(0);
+            startRun();
+            if (!unsolvable) search(0);
         //    startColumn = (HeaderNode)startColumn.right;
         //}
+        stats.searched(start);
     }
 
-    @Override
-    public void print(String message) {
-        if (solution != null) {
-            for (Node o : solution) {
-                if (o == null) break;
-                String[] val = o.name.split("-");
-                board[Integer.parseInt(val[0])][Integer.parseInt(val[1])]
-                    = Integer.parseInt(val[2]);
+    /**
+     * builds the full matrix on the first board of a size, or restores it
+     * on the next ones, and selects the rows of the givens, and of the
+     * positions they force when propagate is set.
+     **/
+    void buildMatrix() {
+        int cells = size * size;
+        if (rows == null || rows.length != cells * size) {
+            rows = new Node[cells * size];
+            givens = new Node[cells];
+            satisfied = new boolean[4 * cells];
+            count = new int[4 * cells];
+            last = new int[4 * cells];
+            root = new LinkedListBuilder().buildFullList(size, rows);
+            level = -1;
+        } else {
+            restoreMatrix();
+        }
+        unsolvable = !LinkedListBuilder.applyGivens(board, propagate,
+            satisfied, count, last);
+        givenCount = 0;
+        for (int i = 0; i < size && !unsolvable; i++) {
+            for (int j = 0; j < size; j++) {
+                if (board[i][j] == 0) continue;
+                Node r = rows[(i * size + j) * size + board[i][j] - 1];
+                cover(r.column);
+                for (Node n = r.right; n != r; n = n.right) {
+                    cover(n.column);
+                }
+                givens[givenCount++] = r;
+            }
+        }
+    }
+
+    /**
+     * takes back the rows the search left selected, deepest first, and then
+     * the rows of the givens, which leaves the full matrix as it was built.
+     **/
+    void restoreMatrix() {
+        if (!fresh && level >= 0) uncover(chosen[level]);
+        for (int d = level - 1; d >= 0; d--) {
+            Node r = solution[d];
+            for (Node n = r.left; n != r; n = n.left) {
+                uncover(n.column);
+            }
+            uncover(chosen[d]);
+        }
+        level = -1;
+        fresh = false;
+        for (int g = givenCount - 1; g >= 0; g--) {
+            Node r = givens[g];
+            for (Node n = r.left; n != r; n = n.left) {
+                uncover(n.column);
             }
+            uncover(r.column);
+        }
+        givenCount = 0;
+    }
+
+    @Override
+    void updateBoard() {
+        for (int d = 0; d < depth; d++) {
+            Node o = solution[d];
+            board[o.i][o.j] = o.k;
+        }
+    }
+
+    /**
+     * copies the givens from the board and the selected rows on top of
+     * them, leaving the board as it is.
+     */
+    @Override
+    void copySolution(int[] dest) {
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(board[i], 0, dest, i * size, size);
+        }
+        for (int d = 0; d < depth; d++) {
+            Node o = solution[d];
+            dest[o.i * size + o.j] = o.k;
         }
-        super.print(message);
     }
 
+    /**
+     * starts the search for exact covers at level k.
+     **/
     void search(int k) {
-        if (root.right == root) {
-            printSolution();
-            return;
-        }
-        HeaderNode c;
-        if (k == 0)
-            c = firstColumn;
-        else
-            c = chooseColumn();
-
-        cover(c);
-        for (Node i = c.down; !i.equals(c); i = i.down) {
-            if (k > solution.length - 1) {
-                Node[] tmp = new Node[k + 100];
-                System.arraycopy(solution, 0, tmp, 0, solution.length);
-                solution = tmp;
+        level = k;
+        fresh = true;
+        stats.enter();
+        runSearch();
+    }
+
+    /**
+     * searches for exact covers from the current level; sets suspended if
+     * the search stopped before it was complete.
+     *
+     * The search keeps its state in solution and chosen instead of on the
+     * call stack: at each level below the current one, chosen holds the
+     * covered column and solution the row being tried. A fresh level has yet
+     * to choose its column; otherwise its row in solution is tried next, and
+     * the column itself in place of a row means the rows are exhausted.
+     **/
+    @Override
+    void runSearch() {
+        while (level >= 0) {
+            if (fresh) {
+                if (root.right == root) {
+                    depth = level;
+                    boolean more = foundSolution();
+                    stats.leave();
+                    backtrack();
+                    if (!more) {
+                        suspended = true;
+                        return;
+                    }
+                    continue;
+                }
+                HeaderNode c;
+                if (level == 0)
+                    c = firstColumn;
+                else
+                    c = chooseColumn();
+                cover(c);
+                chosen[level] = c;
+                solution[level] = c.down;
+                fresh = false;
+            }
+            Node i = solution[level];
+            if (i == chosen[level]) {
+                uncover(chosen[level]);
+                stats.leave();
+                backtrack();
+                continue;
             }
-            solution[k] = i;
-            for (Node j = i.right; !j.equals(i); j = j.right) {
+            for (Node j = i.right; j != i; j = j.right) {
                 cover(j.column);
             }
-            search(k + 1);
-            i = solution[k];
-            c = i.column;
-            for (Node j = i.left; !j.equals(i); j = j.left) {
-                uncover(j.column);
+            level++;
+            fresh = true;
+            stats.enter();
+            if (nodeVisited()) {
+                suspended = true;
+                return;
             }
         }
-        uncover(c);
+    }
+
+    /**
+     * goes back to the previous level, taking back its row and moving on to
+     * the next one.
+     **/
+    void backtrack() {
+        fresh = false;
+        if (--level < 0) return;
+        Node i = solution[level];
+        for (Node j = i.left; j != i; j = j.left) {
+            uncover(j.column);
+        }
+        solution[level] = i.down;
+        stats.backtrack();
     }
 
     /**
      * choose a column to cover; the current implementation returns the column
-     * with minimum number of nodes, thus minimizing the branching factor.
+     * with minimum number of nodes, thus minimizing the branching factor. A
+     * column with at most one node cannot be beaten, except by an empty one
+     * that the next level finds anyway, so it is returned right away.
      **/
     HeaderNode chooseColumn() {
         //return (HeaderNode)root.right;
-        StringBuilder sb = new StringBuilder();
         HeaderNode minHeader = null;
         int minSize = Integer.MAX_VALUE;
         HeaderNode h = (HeaderNode)root.right;
-        while (!h.equals(root)) {
-            sb.append(h.name + " ");
-            if (h.size > 0 && h.size < minSize) {
+        while (h != root) {
+            if (h.size < minSize) {
                 minSize = h.size;
                 minHeader = h;
+                if (minSize <= 1) break;
             }
             h = (HeaderNode)h.right;
         }
@@ -95,17 +260,29 @@ public class DancingLinksSolver extends Solver {
             minHeader = (HeaderNode)root.right;
         if (verbose == 1)
             System.out.println("Choosing column " + minHeader.name
-                + "(" + minHeader.size + "): " + sb.toString());
+                + "(" + minHeader.size + "): " + columnNames());
         return minHeader;
     }
 
+    /**
+     * returns the names of the remaining columns, for the verbose output.
+     **/
+    String columnNames() {
+        StringBuilder sb = new StringBuilder();
+        for (Node h = root.right; h != root; h = h.right) {
+            sb.append(h.name).append(" ");
+        }
+        return sb.toString();
+    }
+
     void cover(HeaderNode c) {
         if (verbose == 1)
             System.out.println("Covering column " + c.name);
+        stats.cover();
         c.right.left = c.left;
         c.left.right = c.right;
-        for (Node i = c.down; !i.equals(c); i = i.down) {
-            for (Node j = i.right; !j.equals(i); j = j.right) {
+        for (Node i = c.down; i != c; i = i.down) {
+            for (Node j = i.right; j != i; j = j.right) {
                 j.down.up = j.up;
                 j.up.down = j.down;
                 j.column.size--;
@@ -116,8 +293,9 @@ public class DancingLinksSolver extends Solver {
     void uncover(HeaderNode c) {
         if (verbose == 1)
             System.out.println("Uncovering column " + c.name);
-        for (Node i = c.up; !i.equals(c); i = i.up) {
-            for (Node j = i.left; !j.equals(i); j = j.left) {
+        stats.uncover();
+        for (Node i = c.up; i != c; i = i.up) {
+            for (Node j = i.left; j != i; j = j.left) {
                 j.column.size++;
                 j.down.up = j;
                 j.up.down = j;
@@ -2,5 +2,9 @@ class HeaderNode extends Node {
     int size;
     public HeaderNode(String name) {
         super(name);
+        // an empty column: the header is its own top and bottom node
+        up = this;
+        down = this;
+        column = this;
     }
 }
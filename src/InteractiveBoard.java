@@ -0,0 +1,609 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A board that is played on rather than solved in one go: numbers are
+ * placed and erased one move at a time, and after any move the board tells
+ * which positions conflict, whether it can still be solved and what a
+ * player could do next. Unlike a Solver it is not rebuilt for each
+ * question; it keeps its state up to date as the moves are made.
+ *
+ * For every row, column and region the board counts how often each number
+ * is placed in it and keeps masks of the numbers placed and of those placed
+ * more than once, as BitmaskSolver does, so a move costs a few operations
+ * per unit and the candidates of a position are found with a few bit
+ * operations. A move also refreshes which empty positions among its peers
+ * have no candidate left, so conflicts and dead ends are known without
+ * looking at the rest of the board.
+ *
+ * Whether the board can be solved is answered from a solution found
+ * earlier as long as every number placed agrees with it; the board counts
+ * the numbers that do not. Only when a move leaves that solution is the
+ * board searched again, by a BitmaskSolver kept for the purpose; the
+ * answer of a search holds until the next move, and a board found not to be
+ * solvable stays so until a number is erased. A search stops after
+ * SEARCH_BUDGET nodes or SEARCH_MILLIS milliseconds, whichever comes first,
+ * as a node of a large board takes far longer than one of a small board;
+ * the board is then not known to be solvable, which isTimedOut tells, and
+ * is searched again when next asked.
+ *
+ * A hint is, in order of preference: a position in conflict, a number
+ * placed that keeps the board from being solved, a naked single, a hidden
+ * single, or else the number a solution has at the empty position with the
+ * fewest candidates. A number is only called a mistake when it differs from
+ * the only solution of the given numbers or, if they have several, when the
+ * board can be solved once that number alone is erased; those checks are
+ * searches of at most CHECK_BUDGET nodes each and SEARCH_MILLIS in all, and
+ * a check that runs over them calls nothing a mistake. When the board is not known to be solvable
+ * only singles are hinted.
+ *
+ * Positions are given by row and column, counted from zero. The numbers of
+ * the original board are given and cannot be changed; boards of up to 64x64
+ * are supported.
+ *
+ * The main method plays a board read as for Sudoku with moves read from
+ * stdin, for trying the board out.
+ *
+ * Usage: java InteractiveBoard board
+ **/
+public class InteractiveBoard {
+    static final long CHECK_BUDGET = 10000; // nodes of a search for a hint
+    static final long SEARCH_BUDGET = 1000000; // nodes of a search for
+                                               // isSolvable
+    static final long SEARCH_MILLIS = 1000; // time of that search, and of
+                                            // the searches for a hint
+
+    int size; // length/breadth of the board
+    int[] cells; // numbers on the board, row by row; zero when empty
+    boolean[] given; // positions of the original board
+    int[] rowOf; // row of each position
+    int[] colOf; // column of each position
+    int[] boxOf; // region of each position
+    int[][] units; // positions in each row, column and region
+    int[][] unitsOf; // row, column and region of each position as units
+    int[][] peers; // positions sharing a unit with each position
+    long all; // mask with a bit for each number
+
+    // per unit: times each number is placed, the numbers placed and the
+    // numbers placed more than once
+    int[][] placed;
+    long[] used;
+    long[] repeated;
+    int conflicts; // numbers placed more than once in a unit, over all units
+
+    // empty positions; the first emptyCount entries are empty and
+    // emptyIndex maps each position to its entry
+    int[] empty;
+    int[] emptyIndex;
+    int emptyCount;
+    boolean[] dead; // empty positions with no candidate left
+    int deadCount;
+
+    BitmaskSolver solver; // searches the board when nothing else tells
+    SolutionCollector collector = SolutionCollector.first();
+    int[] solution; // the last solution found; null if none yet
+    int mismatches; // positions filled otherwise than in the solution
+    boolean unsolvable; // a search showed the board cannot be solved
+    boolean timedOut; // the last search of isSolvable ran out of budget
+    int answer = -1; // Solver.checkUniqueness of the given numbers; -1
+                     // until checked
+    int[] answerSolution; // the only solution of the given numbers
+    long searches; // searches run so far
+
+    public static void main(String[] args) throws IOException {
+        InteractiveBoard board = new InteractiveBoard(
+            PuzzleFormat.parse(args[0], null));
+        System.out.println("moves: row column number (0 erases), hint, "
+            + "check, print, quit");
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(System.in));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            try {
+                if (words[0].equals("quit")) {
+                    break;
+                } else if (words[0].equals("hint")) {
+                    Hint hint = board.hint();
+                    System.out.println(hint == null ? "no hint" : hint);
+                } else if (words[0].equals("check")) {
+                    System.out.println(board.isSolved() ? "solved"
+                        : board.hasConflicts() ? "conflicts at "
+                            + board.describe(board.conflicting())
+                        : board.isSolvable() ? "solvable"
+                        : board.isTimedOut() ? "not known within the budget"
+                        : "not solvable");
+                } else if (words[0].equals("print")) {
+                    System.out.println(PuzzleFormat.format(board.cells,
+                        true));
+                } else if (words.length == 3) {
+                    board.place(Integer.parseInt(words[0]) - 1,
+                        Integer.parseInt(words[1]) - 1,
+                        Integer.parseInt(words[2]));
+                } else if (!words[0].isEmpty()) {
+                    System.out.println("unknown move: " + line);
+                }
+            } catch (IllegalArgumentException iae) {
+                System.out.println(iae.getMessage());
+            }
+        }
+    }
+
+    public InteractiveBoard(int[] puzzle) {
+        size = (int)Math.sqrt(puzzle.length);
+        if (size == 0 || size * size != puzzle.length) {
+            throw new IllegalArgumentException("not a square board: "
+                + puzzle.length + " positions");
+        }
+        if (size > 64) {
+            throw new IllegalArgumentException("board too large: " + size
+                + "x" + size);
+        }
+        int count = puzzle.length;
+        cells = new int[count];
+        given = new boolean[count];
+        rowOf = new int[count];
+        colOf = new int[count];
+        boxOf = new int[count];
+        units = new int[3 * size][size];
+        unitsOf = new int[count][];
+        placed = new int[3 * size][size];
+        used = new long[3 * size];
+        repeated = new long[3 * size];
+        empty = new int[count];
+        emptyIndex = new int[count];
+        dead = new boolean[count];
+        all = (size == 64 ? -1L : (1L << size) - 1);
+
+        int[] unitFill = new int[3 * size];
+        for (int p = 0; p < count; p++) {
+            rowOf[p] = p / size;
+            colOf[p] = p % size;
+            boxOf[p] = LinkedListBuilder.getRegion(rowOf[p], colOf[p], size);
+            units[rowOf[p]][unitFill[rowOf[p]]++] = p;
+            units[size + colOf[p]][unitFill[size + colOf[p]]++] = p;
+            units[2 * size + boxOf[p]][unitFill[2 * size + boxOf[p]]++] = p;
+            unitsOf[p] = new int[] { rowOf[p], size + colOf[p],
+                2 * size + boxOf[p] };
+            empty[p] = p;
+            emptyIndex[p] = p;
+        }
+        emptyCount = count;
+        peers = new int[count][];
+        int[] seen = new int[count]; // position + 1 of the last peer seen
+        int[] buffer = new int[3 * size];
+        for (int p = 0; p < count; p++) {
+            int n = 0;
+            seen[p] = p + 1;
+            for (int u : unitsOf[p]) {
+                for (int q : units[u]) {
+                    if (seen[q] == p + 1) continue;
+                    seen[q] = p + 1;
+                    buffer[n++] = q;
+                }
+            }
+            peers[p] = java.util.Arrays.copyOf(buffer, n);
+        }
+
+        for (int p = 0; p < count; p++) {
+            int k = puzzle[p];
+            if (k == 0) continue;
+            if (k < 0 || k > size) {
+                throw new IllegalArgumentException("invalid position "
+                    + (p + 1) + ": " + k);
+            }
+            put(p, k);
+            given[p] = true;
+        }
+        for (int i = 0; i < emptyCount; i++) {
+            refresh(empty[i]);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int get(int row, int col) {
+        return cells[position(row, col)];
+    }
+
+    public boolean isGiven(int row, int col) {
+        return given[position(row, col)];
+    }
+
+    /**
+     * returns the numbers on the board, row by row, with zero for an empty
+     * position.
+     */
+    public int[] getCells() {
+        return cells.clone();
+    }
+
+    /**
+     * returns the numbers not yet placed in the row, column or region of
+     * the empty position as a mask with bit (k - 1) set for number k; zero
+     * for a filled position.
+     */
+    public long candidates(int row, int col) {
+        int p = position(row, col);
+        return (cells[p] == 0 ? candidates(p) : 0);
+    }
+
+    /**
+     * places the number at the position, replacing the number there if
+     * any; zero erases it. Numbers may be placed where they conflict with
+     * others, as a player may do.
+     */
+    public void place(int row, int col, int value) {
+        int p = position(row, col);
+        if (given[p]) {
+            throw new IllegalArgumentException("position " + (row + 1) + ","
+                + (col + 1) + " is given");
+        }
+        if (value < 0 || value > size) {
+            throw new IllegalArgumentException("invalid number: " + value);
+        }
+        int old = cells[p];
+        if (old == value) return;
+        if (old != 0) take(p);
+        if (value != 0) put(p, value);
+        if (old != 0) unsolvable = false; // the board has fewer numbers
+        refresh(p);
+        for (int q : peers[p]) {
+            refresh(q);
+        }
+    }
+
+    public void erase(int row, int col) {
+        place(row, col, 0);
+    }
+
+    /**
+     * returns true if every position is filled and no number repeats in a
+     * row, column or region.
+     */
+    public boolean isSolved() {
+        return emptyCount == 0 && conflicts == 0;
+    }
+
+    /**
+     * returns true if a number repeats in a row, column or region.
+     */
+    public boolean hasConflicts() {
+        return conflicts > 0;
+    }
+
+    /**
+     * returns the positions, row by row, whose number is placed again in
+     * their row, column or region.
+     */
+    public int[] conflicting() {
+        int[] found = new int[conflicts == 0 ? 0 : cells.length];
+        int n = 0;
+        for (int p = 0; p < cells.length && conflicts > 0; p++) {
+            int k = cells[p];
+            if (k != 0 && ((repeated[rowOf[p]] | repeated[size + colOf[p]]
+                    | repeated[2 * size + boxOf[p]]) & (1L << (k - 1))) != 0) {
+                found[n++] = p;
+            }
+        }
+        return java.util.Arrays.copyOf(found, n);
+    }
+
+    /**
+     * returns true if the empty positions can be filled so that the board
+     * is solved, false if not or if the search ran out of SEARCH_BUDGET
+     * nodes or SEARCH_MILLIS. The board is searched only if no conflict or position without
+     * candidates rules it out and it has left the last solution found.
+     */
+    public boolean isSolvable() {
+        timedOut = false;
+        if (conflicts > 0 || deadCount > 0) return false;
+        if (solution != null && mismatches == 0) return true;
+        if (unsolvable) return false;
+        int[] found = search(cells, SEARCH_BUDGET,
+            TimeUnit.MILLISECONDS.toNanos(SEARCH_MILLIS));
+        if (found == null) {
+            timedOut = solver.isTimedOut();
+            unsolvable = !timedOut;
+            return false;
+        }
+        setSolution(found);
+        return true;
+    }
+
+    /**
+     * returns true if the last call of isSolvable returned false because
+     * its search ran out of budget rather than because the board cannot be
+     * solved.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * returns the next step a player could take, or null if the board is
+     * solved, its given numbers have no solution, it cannot be solved but
+     * no number placed can be told to be a mistake, or it is not known to
+     * be solvable and has no single.
+     */
+    public Hint hint() {
+        if (conflicts > 0) {
+            for (int p : conflicting()) {
+                if (!given[p]) return hint(Hint.CONFLICT, p, cells[p]);
+            }
+            return null; // the given numbers conflict
+        }
+        boolean solvable = isSolvable();
+        if (!solvable && !timedOut) {
+            int p = mistake();
+            return (p < 0 ? null : hint(Hint.MISTAKE, p, cells[p]));
+        }
+        if (emptyCount == 0) return null;
+
+        int fewest = -1; // empty position with the fewest candidates
+        int fewestCount = Integer.MAX_VALUE;
+        for (int i = 0; i < emptyCount; i++) {
+            int p = empty[i];
+            long c = candidates(p);
+            int n = Long.bitCount(c);
+            if (n == 1) {
+                return hint(Hint.NAKED_SINGLE, p,
+                    Long.numberOfTrailingZeros(c) + 1);
+            }
+            if (n < fewestCount) {
+                fewest = p;
+                fewestCount = n;
+            }
+        }
+        for (int u = 0; u < units.length; u++) {
+            long once = 0; // numbers that may go in a position of the unit
+            long twice = 0; // numbers that may go in two or more
+            for (int p : units[u]) {
+                if (cells[p] != 0) continue;
+                long c = candidates(p);
+                twice |= once & c;
+                once |= c;
+            }
+            long singles = once & ~twice;
+            if (singles == 0) continue;
+            long bit = singles & -singles;
+            for (int p : units[u]) {
+                if (cells[p] == 0 && (candidates(p) & bit) != 0) {
+                    return hint(Hint.HIDDEN_SINGLE, p,
+                        Long.numberOfTrailingZeros(bit) + 1);
+                }
+            }
+        }
+        if (!solvable) return null; // no solution to take a number from
+        return hint(Hint.SEARCH, fewest, solution[fewest]);
+    }
+
+    /**
+     * returns a position whose number keeps the board from being solved,
+     * or -1 if none can be found within the budget. On a board whose given
+     * numbers have a single solution that is any number placed otherwise;
+     * on other boards it is a number whose erasure alone lets the board be
+     * solved, or else one that no solution of the givens has at its
+     * position, since a number that only differs from one solution of the
+     * givens may still lead to another.
+     */
+    int mistake() {
+        long deadline = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(SEARCH_MILLIS);
+        if (answer < 0 || answer == Solver.TIMED_OUT) {
+            int[] givens = new int[cells.length];
+            for (int p = 0; p < cells.length; p++) {
+                if (given[p]) givens[p] = cells[p];
+            }
+            prepare(givens, CHECK_BUDGET, deadline - System.nanoTime());
+            answer = solver.checkUniqueness();
+            if (answer == Solver.UNIQUE) {
+                answerSolution = solver.getSolution().clone();
+            }
+        }
+        if (answer == Solver.UNIQUE) {
+            for (int p = 0; p < cells.length; p++) {
+                if (cells[p] != 0 && cells[p] != answerSolution[p]) return p;
+            }
+            return -1; // not reached: an unsolvable board has a mistake
+        }
+        if (answer == Solver.NO_SOLUTION) return -1;
+        int[] board = cells.clone();
+        for (int p = 0; p < cells.length; p++) {
+            if (cells[p] == 0 || given[p]) continue;
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return -1;
+            board[p] = 0;
+            if (search(board, CHECK_BUDGET, left) != null) return p;
+            board[p] = cells[p];
+        }
+        for (int p = 0; p < cells.length; p++) {
+            board[p] = (given[p] ? cells[p] : 0);
+        }
+        for (int p = 0; p < cells.length; p++) {
+            if (cells[p] == 0 || given[p]) continue;
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return -1;
+            board[p] = cells[p];
+            prepare(board, CHECK_BUDGET, left);
+            solver.solve();
+            if (collector.getCount() == 0 && !solver.isTimedOut()) return p;
+            board[p] = 0;
+        }
+        return -1;
+    }
+
+    Hint hint(int kind, int p, int value) {
+        return new Hint(kind, rowOf[p], colOf[p], value);
+    }
+
+    /**
+     * returns the number of searches run so far.
+     */
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * returns the positions as row,column pairs counted from one.
+     */
+    String describe(int[] positions) {
+        StringBuilder text = new StringBuilder();
+        for (int p : positions) {
+            if (text.length() > 0) text.append(' ');
+            text.append(rowOf[p] + 1).append(',').append(colOf[p] + 1);
+        }
+        return text.toString();
+    }
+
+    int position(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
+            throw new IllegalArgumentException("no position " + (row + 1)
+                + "," + (col + 1) + " on a " + size + "x" + size + " board");
+        }
+        return row * size + col;
+    }
+
+    /**
+     * returns the numbers not placed in any unit of the position.
+     */
+    long candidates(int p) {
+        return all & ~(used[rowOf[p]] | used[size + colOf[p]]
+            | used[2 * size + boxOf[p]]);
+    }
+
+    /**
+     * puts number k in the empty position.
+     */
+    void put(int p, int k) {
+        long bit = 1L << (k - 1);
+        for (int u : unitsOf[p]) {
+            int n = ++placed[u][k - 1];
+            if (n == 1) {
+                used[u] |= bit;
+            } else if (n == 2) {
+                repeated[u] |= bit;
+                conflicts++;
+            }
+        }
+        cells[p] = k;
+        int last = empty[--emptyCount];
+        int i = emptyIndex[p];
+        empty[i] = last;
+        emptyIndex[last] = i;
+        empty[emptyCount] = p;
+        emptyIndex[p] = emptyCount;
+        if (solution != null && solution[p] != k) mismatches++;
+    }
+
+    /**
+     * takes the number off the filled position.
+     */
+    void take(int p) {
+        int k = cells[p];
+        long bit = 1L << (k - 1);
+        for (int u : unitsOf[p]) {
+            int n = --placed[u][k - 1];
+            if (n == 0) {
+                used[u] &= ~bit;
+            } else if (n == 1) {
+                repeated[u] &= ~bit;
+                conflicts--;
+            }
+        }
+        cells[p] = 0;
+        int first = empty[emptyCount];
+        int i = emptyIndex[p];
+        empty[i] = first;
+        emptyIndex[first] = i;
+        empty[emptyCount] = p;
+        emptyIndex[p] = emptyCount++;
+        if (solution != null && solution[p] != k) mismatches--;
+    }
+
+    /**
+     * updates whether the position is empty with no candidate left.
+     */
+    void refresh(int p) {
+        boolean d = (cells[p] == 0 && candidates(p) == 0);
+        if (d != dead[p]) {
+            dead[p] = d;
+            deadCount += (d ? 1 : -1);
+        }
+    }
+
+    /**
+     * makes the solution the one the board is compared with.
+     */
+    void setSolution(int[] found) {
+        solution = found;
+        mismatches = 0;
+        for (int p = 0; p < cells.length; p++) {
+            if (cells[p] != 0 && cells[p] != found[p]) mismatches++;
+        }
+    }
+
+    /**
+     * returns a solution of the board, or null if it has none or none was
+     * found within the node budget and the nanoseconds given.
+     */
+    int[] search(int[] board, long budget, long nanos) {
+        prepare(board, budget, nanos);
+        solver.solve();
+        int[] found = collector.getFirst();
+        return (found == null ? null : found.clone());
+    }
+
+    /**
+     * sets the solver to search the board within the node budget and the
+     * nanoseconds given.
+     */
+    void prepare(int[] board, long budget, long nanos) {
+        searches++;
+        if (solver == null) {
+            solver = new BitmaskSolver(board, "BitmaskSolver");
+            solver.setListener(collector);
+        } else {
+            solver.reset(board);
+            collector.clear();
+        }
+        solver.setNodeBudget(budget);
+        solver.setTimeLimit(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A step a player could take next: the position and number it is
+     * about and the kind of reasoning behind it.
+     **/
+    public static class Hint {
+        public static final int CONFLICT = 0; // the number repeats
+        public static final int MISTAKE = 1; // keeps the board unsolvable
+        public static final int NAKED_SINGLE = 2; // its only candidate
+        public static final int HIDDEN_SINGLE = 3; // its only place in a unit
+        public static final int SEARCH = 4; // found by searching
+        static final String[] KINDS = { "conflict", "mistake",
+            "naked single", "hidden single", "search" };
+
+        public final int kind;
+        public final int row;
+        public final int col;
+        public final int value;
+
+        Hint(int kind, int row, int col, int value) {
+            this.kind = kind;
+            this.row = row;
+            this.col = col;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return KINDS[kind] + ": " + value + " at " + (row + 1) + ","
+                + (col + 1);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Propagates the constraints of many boards of the same size at once. The
+ * candidate masks of the boards are kept side by side, one lane per board:
+ * entry (cell * lanes + lane) of cand holds the numbers still possible at the
+ * position of that board, bit (k - 1) standing for the number k. Every round
+ * walks the rows, columns and regions once and, in each lane, removes the
+ * numbers placed in the unit from the other positions (naked singles) and
+ * reduces a position to the numbers that have no other place in the unit
+ * (hidden singles), until a round changes nothing.
+ *
+ * The lanes never depend on each other, so the same steps can be taken for
+ * many lanes with one vector instruction; VectorLaneBatch, built separately
+ * as it needs the incubating Vector API, does that. This class runs the
+ * steps with scalar loops and gives identical results, lane for lane, when
+ * the vector version is not available. Boards that propagation does not
+ * complete are left for a search.
+ *
+ * Masks are ints, so boards of up to 32x32 are supported.
+ **/
+public class LaneBatch {
+    public static final int SOLVED = 0; // every position has one number
+    public static final int NO_SOLUTION = 1; // a contradiction was found
+    public static final int OPEN = 2; // the board needs a search
+    static final int LANES = 64; // boards propagated together
+
+    int size; // length/breadth of the boards
+    int lanes; // number of boards
+    int all; // mask with a bit for each number
+    int[][] units; // positions in each row, column and region
+    int[] cand; // candidates of each position of each board
+    int[] dead; // numbers found contradicting in each board; zero if none
+
+    // what the current unit holds in each board: the numbers placed, placed
+    // twice, possible at least once and at least twice, and possible once
+    // but not placed
+    int[] solved;
+    int[] twiceSolved;
+    int[] once;
+    int[] twice;
+    int[] hidden;
+
+    LaneBatch(int size, int lanes) {
+        if (size > 32) {
+            throw new IllegalArgumentException("board too large for "
+                + "LaneBatch: " + size + "x" + size);
+        }
+        this.size = size;
+        this.lanes = lanes;
+        all = (size == 32 ? -1 : (1 << size) - 1);
+        cand = new int[size * size * lanes];
+        dead = new int[lanes];
+        solved = new int[lanes];
+        twiceSolved = new int[lanes];
+        once = new int[lanes];
+        twice = new int[lanes];
+        hidden = new int[lanes];
+        units = new int[3 * size][size];
+        int boxRows = Solver.boxRows(size);
+        int boxCols = size / boxRows;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int p = i * size + j;
+                int box = (i / boxRows) * boxRows + j / boxCols;
+                int x = (i % boxRows) * boxCols + j % boxCols;
+                units[i][j] = p;
+                units[size + j][i] = p;
+                units[2 * size + box][x] = p;
+            }
+        }
+    }
+
+    /**
+     * returns a batch for boards of the given size: the vectorized one if
+     * it was built and the jdk.incubator.vector module is present, unless
+     * the sudoku.vector system property is false, and this one otherwise.
+     */
+    static LaneBatch create(int size) {
+        if (!"false".equals(System.getProperty("sudoku.vector"))) {
+            try {
+                return (LaneBatch)Class.forName("VectorLaneBatch")
+                    .getDeclaredConstructor(int.class, int.class)
+                    .newInstance(size, LANES);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // not built or not enabled; use the scalar loops
+            }
+        }
+        return new LaneBatch(size, LANES);
+    }
+
+    /**
+     * puts the board, row by row, in the given lane.
+     */
+    void load(int lane, int[] puzzle) {
+        for (int p = 0; p < puzzle.length; p++) {
+            int k = puzzle[p];
+            cand[p * lanes + lane] = (k == 0 ? all : 1 << (k - 1));
+        }
+        dead[lane] = 0;
+    }
+
+    /**
+     * leaves the given lane empty, which propagation leaves alone.
+     */
+    void clear(int lane) {
+        for (int p = 0; p < size * size; p++) {
+            cand[p * lanes + lane] = all;
+        }
+        dead[lane] = 0;
+    }
+
+    /**
+     * runs rounds until one changes nothing in any lane.
+     */
+    void propagate() {
+        while (round()) {
+        }
+    }
+
+    /**
+     * walks every unit once in every lane; returns true if a position lost
+     * a candidate.
+     *
+     * For each unit, a first pass collects the numbers placed (positions
+     * with a single candidate), the numbers placed twice, and the numbers
+     * possible at least once and at least twice. A number placed twice or
+     * possible nowhere is a contradiction. The second pass removes the
+     * placed numbers from the other positions and narrows a position to
+     * the numbers possible only there.
+     */
+    boolean round() {
+        boolean changed = false;
+        for (int[] unit : units) {
+            java.util.Arrays.fill(solved, 0);
+            java.util.Arrays.fill(twiceSolved, 0);
+            java.util.Arrays.fill(once, 0);
+            java.util.Arrays.fill(twice, 0);
+            for (int p : unit) {
+                int base = p * lanes;
+                for (int l = 0; l < lanes; l++) {
+                    int m = cand[base + l];
+                    int single = ((m & (m - 1)) == 0 ? m : 0);
+                    twiceSolved[l] |= solved[l] & single;
+                    solved[l] |= single;
+                    twice[l] |= once[l] & m;
+                    once[l] |= m;
+                }
+            }
+            for (int l = 0; l < lanes; l++) {
+                dead[l] |= twiceSolved[l] | (all & ~once[l]);
+                hidden[l] = once[l] & ~twice[l] & ~solved[l];
+            }
+            for (int p : unit) {
+                int base = p * lanes;
+                for (int l = 0; l < lanes; l++) {
+                    int m = cand[base + l];
+                    int n = m & ~solved[l];
+                    if ((n & hidden[l]) != 0) n &= hidden[l];
+                    if ((m & (m - 1)) == 0) n = m;
+                    if (n != m) {
+                        cand[base + l] = n;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * returns the state of the board in the given lane and copies its
+     * positions with a single candidate to the board, row by row, leaving
+     * the others zero.
+     */
+    int result(int lane, int[] board) {
+        boolean open = false;
+        for (int p = 0; p < board.length; p++) {
+            int m = cand[p * lanes + lane];
+            if (m == 0) return NO_SOLUTION;
+            if ((m & (m - 1)) == 0) {
+                board[p] = Integer.numberOfTrailingZeros(m) + 1;
+            } else {
+                board[p] = 0;
+                open = true;
+            }
+        }
+        if (dead[lane] != 0) return NO_SOLUTION;
+        return (open ? OPEN : SOLVED);
+    }
+}
@@ -1,44 +1,173 @@
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Map;
-import java.util.HashMap;
+import java.io.Writer;
 
 public class LinkedListBuilder {
+    Writer trace; // optional sink the matrix is written to, for debugging
+    boolean propagate; // fill in forced positions before building
+
     /**
      * Takes a sudoku board in two-dimensional integer array format and
      * converts it to a doubly-linked list suitable for applying the
      * Dancing Links algorithm.
+     *
+     * The list has a column for each constraint and a row for each possible
+     * number in each possible position. The four nodes of a row are linked
+     * straight into their columns as the row is created, so building takes
+     * time and memory in proportion to the number of nodes.
+     *
+     * The givens are applied while building: the columns they satisfy are
+     * left out, and so are the rows that conflict with them. When propagate
+     * is set, positions forced by the givens are filled in on the board
+     * first and left out as well. A board that cannot be solved gets a list
+     * with a single empty column.
      **/
     HeaderNode buildLinkedList(int[][] input) {
-        // create a two-dimensional array of data objects. The array
-        // has a column for each constraint and a row for each possible
-        // number in each possible position.
         int size = input.length;
+        boolean[] satisfied = applyGivens(input, propagate);
+        if (satisfied == null) {
+            HeaderNode root = new HeaderNode("root");
+            linkRight(linkRight(root, new HeaderNode("unsolvable")), root);
+            return root;
+        }
         HeaderNode[] header = new HeaderNode[size * size * 4];
         createHeaderNodes(size, header);
+        createDataNodes(input, header, satisfied);
+        HeaderNode root = linkHeaderNodes(header, satisfied);
 
-        Node[][] data = new Node[size * size * size + 1][size * size * 4];
-        createDataNodes(input, data);
+        // (for debugging) check the list when tracing
+        if (trace != null) verifyLinkedList(root, input, satisfied);
+        return root;
+    }
 
-        // (for debugging) write to file
-        writeToFile(header, data, "sudoku.csv");
+    /**
+     * Builds the full matrix for boards of the given size, with a row for
+     * every number in every position, and stores the first node of each row
+     * in rows at (i * size + j) * size + k - 1. The givens of a board are
+     * applied afterwards by selecting their rows, so that the matrix can be
+     * restored and reused for any number of boards of the size.
+     **/
+    HeaderNode buildFullList(int size, Node[] rows) {
+        HeaderNode[] header = new HeaderNode[size * size * 4];
+        createHeaderNodes(size, header);
+        for (int k = 1; k <= size; k++) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    rows[(i * size + j) * size + k - 1]
+                        = createRow(header, i, j, k, size);
+                }
+            }
+        }
+        return linkHeaderNodes(header, new boolean[header.length]);
+    }
 
-        // now link the nodes to create the doubly-linked list
-        linkDataNodes(header, data);
-        HeaderNode root = linkHeaderNodes(header, data);
+    /**
+     * Returns the index of a column of the matrix; type is 0 for the
+     * position, 1 for the row, 2 for the column and 3 for the region
+     * constraint of the number k (one-based) at row i and column j.
+     */
+    static int column(int type, int i, int j, int k, int size) {
+        switch (type) {
+            case 0: return i * size + j;
+            case 1: return size * size + (k - 1) * size + i;
+            case 2: return 2 * size * size + (k - 1) * size + j;
+            default: return 3 * size * size + (k - 1) * size
+                + getRegion(i, j, size);
+        }
+    }
 
-        verifyLinkedList(root, input);
-        return root;
+    /**
+     * Returns true if the number k may go in the empty position at row i and
+     * column j, i.e. none of the columns of its row is satisfied.
+     */
+    static boolean isAllowed(int[][] input, boolean[] satisfied, int i,
+            int j, int k) {
+        if (input[i][j] != 0) return false;
+        int size = input.length;
+        for (int type = 0; type < 4; type++) {
+            if (satisfied[column(type, i, j, k, size)]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the columns satisfied by the numbers on the board. When
+     * propagate is set, a column left with a single allowed row forces that
+     * row: its number is filled in on the board and its columns are marked,
+     * until no column is left with a single row. Returns the satisfied
+     * columns, or null if the board cannot be solved.
+     */
+    static boolean[] applyGivens(int[][] input, boolean propagate) {
+        int columns = input.length * input.length * 4;
+        boolean[] satisfied = new boolean[columns];
+        if (!applyGivens(input, propagate, satisfied, new int[columns],
+                new int[columns])) {
+            return null;
+        }
+        return satisfied;
     }
 
     /**
-     * Takes an input grid of the sudoku board in two-dimensional integer
-     * array format and converts it to a two-dimensional array representing
-     * possible positions as rows and their corresponding constraints as
-     * columns. This method creates only the column header nodes where each
-     * column represents a constraint.
+     * As above, with the arrays to work in passed by the caller, one entry
+     * per column each, so that solvers reused for many boards allocate
+     * nothing; count and last receive the number of allowed rows of each
+     * column and the last of them, as (i * size + j) * size + k - 1. Returns
+     * false if the board cannot be solved.
+     */
+    static boolean applyGivens(int[][] input, boolean propagate,
+            boolean[] satisfied, int[] count, int[] last) {
+        int size = input.length;
+        int columns = size * size * 4;
+        java.util.Arrays.fill(satisfied, false);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (input[i][j] == 0) continue;
+                for (int type = 0; type < 4; type++) {
+                    int c = column(type, i, j, input[i][j], size);
+                    if (satisfied[c]) return false; // givens conflict
+                    satisfied[c] = true;
+                }
+            }
+        }
+
+        boolean changed = propagate;
+        while (changed) {
+            changed = false;
+            java.util.Arrays.fill(count, 0);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    for (int k = 1; k <= size; k++) {
+                        if (!isAllowed(input, satisfied, i, j, k)) continue;
+                        for (int type = 0; type < 4; type++) {
+                            int c = column(type, i, j, k, size);
+                            count[c]++;
+                            last[c] = (i * size + j) * size + k - 1;
+                        }
+                    }
+                }
+            }
+            for (int c = 0; c < columns; c++) {
+                if (satisfied[c]) continue;
+                if (count[c] == 0) return false;
+                if (count[c] > 1) continue;
+                int i = last[c] / size / size;
+                int j = last[c] / size % size;
+                int k = last[c] % size + 1;
+                // an earlier forced row may have taken this one's place
+                if (!isAllowed(input, satisfied, i, j, k)) return false;
+                input[i][j] = k;
+                for (int type = 0; type < 4; type++) {
+                    satisfied[column(type, i, j, k, size)] = true;
+                }
+                changed = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the column header nodes for a board of the given size, where
+     * each column represents a constraint: a number in each position, and
+     * each number in each row, column and region.
      */
     void createHeaderNodes(int size, HeaderNode[] header) {
         int col = 0;
@@ -82,156 +211,80 @@ public class LinkedListBuilder {
 
     /**
      * Takes an input grid of the sudoku board in two-dimensional
-     * integer array format and converts it to a two-dimensional
-     * array representing possible positions and their corresponding
-     * constraints. The constraints that exist are represented by Node
-     * data objects. They are not linked in this method.
+     * integer array format and creates the data nodes: a row of four
+     * nodes, one per constraint, for every number allowed in each empty
+     * position. The nodes of a row are linked to each other and appended
+     * to the bottom of their columns.
      */
-    void createDataNodes(int[][] input, Node[][] data) {
+    void createDataNodes(int[][] input, HeaderNode[] header,
+            boolean[] satisfied) {
         int size = input.length;
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (input[i][j] == 0) {
-                    // add an entry for each possible number
-                    for (int k = 0; k < size; k++) {
-                        // rows are ordered 1R1C1,...1R1C9,1R2C1...1R9C9,2R1C1...2R9C9...9R9C9
-                        // add data object for position
-                        data[(k * size * size) + (i * size) + j][i * size + j]
-                             = new Node(i, j, k + 1);
-                        // add data object for row
-                        data[(k * size * size) + (i * size) + j][size * size
-                            + k * size + i] = new Node(i, j, k + 1);
-                        // add data object for column
-                        data[(k * size * size) + (i * size) + j][2 * size * size
-                            + k * size + j] = new Node(i, j, k + 1);
-                        // add data object for region
-                        data[(k * size * size) + (i * size) + j][3 * size * size
-                            + k * size + getRegion(i, j, size)]
-                            = new Node(i, j, k + 1);
-                    }
-                }
-                else {
-                    // add data object for position
-                    data[((input[i][j] - 1) * size * size) + (i * size)
-                        + j][i * size + j] = new Node(i, j, input[i][j]);
-                    // add data object for row
-                    data[((input[i][j] - 1) * size * size) + (i * size)
-                        + j][size * size + (input[i][j] - 1) * size + i]
-                        = new Node(i, j, input[i][j]);
-                    // add data object for column
-                    data[((input[i][j] - 1) * size * size) + (i * size)
-                        + j][2 * size * size + (input[i][j] - 1) * size + j]
-                        = new Node(i, j, input[i][j]);
-                    // add data object for region
-                    data[((input[i][j] - 1) * size * size) + (i * size)
-                        + j][3 * size * size + (input[i][j] - 1) * size
-                        + getRegion(i, j, size)] = new Node(i, j, input[i][j]);
+        // rows are ordered 1R1C1,...1R1C9,1R2C1...1R9C9,2R1C1...2R9C9...9R9C9
+        for (int k = 1; k <= size; k++) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (!isAllowed(input, satisfied, i, j, k)) continue;
+                    Node row = createRow(header, i, j, k, size);
+
+                    // (for debugging) write the row to the trace sink
+                    if (trace != null) writeRow(row);
                 }
             }
         }
     }
 
     /**
-     * Links data nodes to create the row and column linked lists.
+     * Creates the row of four linked nodes for the number k at row i and
+     * column j and appends its nodes to their columns; returns the first.
      */
-    void linkDataNodes(HeaderNode[] header, Node[][] data) {
-        int rows = data.length;
-        int cols = data[0].length;
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                if (data[i][j] == null) continue;
-
-                // link left data node
-                int l = (j == 0 ? cols - 1 : j - 1);
-                while (data[i][l] == null && l != j) {
-                    l = (l == 0 ? cols - 1 : l - 1);
-                }
-                data[i][j].left = data[i][l];
-
-                // link right data node
-                int r = (j == cols - 1 ? 0 : j + 1);
-                while (data[i][r] == null && r != j) {
-                    r = (r == cols - 1 ? 0 : r + 1);
-                }
-                data[i][j].right = data[i][r];
+    Node createRow(HeaderNode[] header, int i, int j, int k, int size) {
+        // position, row, column and region constraints
+        Node row = appendNode(header[column(0, i, j, k, size)], i, j, k);
+        Node last = row;
+        for (int type = 1; type < 4; type++) {
+            last = linkRight(last, appendNode(
+                header[column(type, i, j, k, size)], i, j, k));
+        }
+        linkRight(last, row);
+        return row;
+    }
 
-                // link up data node
-                if (i == 0) {
-                    data[i][j].up = header[j];
-                } else {
-                    int u = i - 1;
-                    while (u > 0 && data[u][j] == null) u--;
-                    if (u == 0) {
-                        data[i][j].up = header[j];
-                    } else {
-                        data[i][j].up = data[u][j];
-                    }
-                }
+    /**
+     * Creates a data node and appends it to the bottom of the column.
+     */
+    Node appendNode(HeaderNode column, int i, int j, int k) {
+        Node node = new Node(i, j, k);
+        node.column = column;
+        node.up = column.up;
+        node.down = column;
+        column.up.down = node;
+        column.up = node;
+        column.size++;
+        return node;
+    }
 
-                // link down data node
-                if (i == rows - 1) {
-                    data[i][j].down = header[j];
-                } else {
-                    int d = i + 1;
-                    while (d < rows - 1 && data[d][j] == null) d++;
-                    if (d == rows - 1) {
-                        data[i][j].down = header[j];
-                    } else {
-                        data[i][j].down = data[d][j];
-                    }
-                }
-                // link to head of the column list
-                data[i][j].column = header[j];
-            }
-        }
+    /**
+     * Links the node to the right of the given one; returns the node.
+     */
+    Node linkRight(Node left, Node node) {
+        left.right = node;
+        node.left = left;
+        return node;
     }
 
     /**
-     * Links root and header nodes to each other; sets column size.
-     *
+     * Links root and the header nodes of the columns that are not yet
+     * satisfied to each other.
      */
-    HeaderNode linkHeaderNodes(HeaderNode[] header, Node[][] data) {
-        int rows = data.length;
-        int cols = data[0].length;
-        int colSize = 0;
-        for (int j = 0; j < header.length; j++) {
-            for (int i = 0; i < rows; i++) {
-                if (data[i][j] != null) colSize++;
-            }
-            header[j].size = colSize;
-            colSize = 0;
-        }
+    HeaderNode linkHeaderNodes(HeaderNode[] header, boolean[] satisfied) {
         HeaderNode root = new HeaderNode("root");
         HeaderNode prev = root;
-        HeaderNode last = null;
-
         for (int j = 0; j < header.length; j++) {
-            if (header[j].size == 0) continue;
-            header[j].left = prev;
+            if (satisfied[j]) continue;
+            linkRight(prev, header[j]);
             prev = header[j];
-            last = header[j];
-
-            int u = rows - 1;
-            while (u >= 0 && data[u][j] == null) u--;
-            header[j].up = data[u][j];
-            int d = 0;
-            while (d < rows && data[d][j] == null) d++;
-            header[j].down = data[d][j];
-
-            header[j].column = header[j];
-
         }
-        root.left = last;
-
-        HeaderNode next = root;
-        HeaderNode first = null;
-        for (int j = header.length - 1; j >= 0; j--) {
-            if (header[j].size == 0) continue;
-            header[j].right = next;
-            next = header[j];
-            first = header[j];
-        }
-        root.right = first;
+        linkRight(prev, root);
         return root;
     }
 
@@ -239,78 +292,59 @@ public class LinkedListBuilder {
      * Returns an integer based on which region of the grid the row and column
      * is in; the regions are numbered zero to (size - 1) from left to right
      * and top to bottom with the top-left being zero and bottom-right being
-     * (size - 1).
+     * (size - 1). Regions are Solver.boxRows(size) rows high and as wide as
+     * needed to hold size positions.
      */
-    int getRegion(int row, int col, int size) {
-        int regionSize = (int)java.lang.Math.sqrt(size);
-        return ((row / regionSize) * regionSize + (col / regionSize));
+    static int getRegion(int row, int col, int size) {
+        int boxRows = Solver.boxRows(size);
+        return ((row / boxRows) * boxRows + (col / (size / boxRows)));
     }
 
     /*
-     * An optional method for writing the two-dimensional array representation
-     * of the positions and constraints to an output file in comma-separated
-     * format.
+     * Writes a row of the matrix of positions and constraints to the trace
+     * sink in a sparse format: the name of the row (row-column-number,
+     * counted from zero, zero and one) followed by the names of the columns
+     * it has a node in.
      */
-    void writeToFile(HeaderNode[] header, Node[][] data, String fileName) {
+    void writeRow(Node row) {
+        StringBuilder sbRow = new StringBuilder();
+        sbRow.append(row.i).append("-").append(row.j).append("-")
+            .append(row.k).append(":");
+        Node n = row;
+        do {
+            sbRow.append(" ").append(n.column.name);
+            n = n.right;
+        } while (n != row);
         try {
-            File file = new File(fileName);
-            if (!file.exists()) file.createNewFile();
-            FileWriter fw = new FileWriter(file.getAbsoluteFile());
-            BufferedWriter bw = new BufferedWriter(fw);
-            StringBuilder sbHeader = new StringBuilder();
-            for (int i = 0; i < header.length; i++) {
-                sbHeader.append(header[i].name).append(",");
-            }
-            bw.write(sbHeader.toString());
-            bw.newLine();
-            for (int i = 0; i < data.length; i++) {
-                StringBuilder sbRow = new StringBuilder();
-                for (int j = 0; j < data[0].length; j++) {
-                    if (data[i][j] == null) {
-                        sbRow.append("0,") ;
-                    } else {
-                        sbRow.append("1,");
-                    }
-                }
-                bw.write(sbRow.toString());
-                bw.newLine();
-            }
-            bw.close();
+            trace.write(sbRow.append("\n").toString());
+            trace.flush();
         } catch (IOException ioe) {
-            System.out.println("Error writing to file.");
+            System.out.println("Error writing matrix.");
         }
     }
 
-    boolean verifyLinkedList(HeaderNode root, int[][] input) {
+    boolean verifyLinkedList(HeaderNode root, int[][] input,
+            boolean[] satisfied) {
         boolean isValid = true;
-        Map<String, Node> nodeMap = new HashMap<String, Node>();
+        int size = input.length;
+        // marks each (row, column, number) found in the linked list
+        boolean[] found = new boolean[size * size * size];
         Node colHeader = root.right;
         while (colHeader != root) {
             Node row = colHeader.down;
             while (row != colHeader) {
-                nodeMap.put(row.name, row);
+                found[(row.i * size + row.j) * size + row.k - 1] = true;
                 row = row.down;
             }
             colHeader = colHeader.right;
         }
-        for (int i = 0; i < input.length; i++) {
-            for (int j = 0; j < input[0].length; j++) {
-                if (input[i][j] == 0) {
-                    for (int k = 0; k < input.length; k++) {
-                        String name = i + "-" + j + "-" + (k + 1);
-                        Node n = nodeMap.get(name);
-                        if (n == null) {
-                            System.out.println("name " + name + "("
-                                + input[i][j] + ") not found in linked list.");
-                            isValid = false;
-                        }
-                    }
-                } else {
-                    String name = i + "-" + j + "-" + input[i][j];
-                    Node n = nodeMap.get(name);
-                    if (n == null) {
-                        System.out.println("name " + name + "("
-                                + input[i][j] + ") not found in linked list.");
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                for (int k = 1; k <= size; k++) {
+                    if (!isAllowed(input, satisfied, i, j, k)) continue;
+                    if (!found[(i * size + j) * size + k - 1]) {
+                        System.out.println("name " + i + "-" + j + "-" + k
+                            + "(" + input[i][j] + ") not found in linked list.");
                         isValid = false;
                     }
                 }
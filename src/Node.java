@@ -4,11 +4,12 @@ class Node {
     Node up;
     Node down;
     HeaderNode column; // points to the column header
-    String name; // a string identifier for row name, for printing solution
+    String name; // a string identifier for header nodes, for printing
 
     public Node(String name) {
         this.name = name;
     }
+    // row, column and number of the position a data node represents
     int i;
     int j;
     int k;
@@ -16,6 +17,5 @@ class Node {
         this.i = i;
         this.j = j;
         this.k = k;
-        this.name = i + "-" + j + "-" + k;
     }
 }
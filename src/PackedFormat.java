@@ -0,0 +1,476 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes files of sudoku boards in a packed binary format, for
+ * collections too large to parse as text. All boards of a file have the
+ * same size, and each board takes the same number of bytes, so a board is
+ * found by its index alone.
+ *
+ * The file starts with a header of HEADER_SIZE bytes:
+ *
+ *   bytes 0-3   the magic number "SDKP"
+ *   byte  4     the version of the format, VERSION
+ *   byte  5     the size of the boards, 1 to 255
+ *   byte  6     the bits per position, see bits
+ *   byte  7     flags; SOLUTIONS is set if each board is followed by its
+ *               solution
+ *   bytes 8-15  the number of boards, big-endian
+ *
+ * followed by the boards, each row by row with the number at each position,
+ * zero for an empty one, in as many bits as numbers up to the size need:
+ * 4 bits for a 9x9 board, 5 for 16x16 and 25x25. The bits are packed from
+ * the most significant bit of each byte down, and a board is padded to a
+ * whole number of bytes, so a 9x9 board takes 41 bytes. When the file has
+ * solutions, each board is followed by its solution in the same layout; a
+ * solution of all zeroes means none was recorded.
+ *
+ * A Reader maps the file a window at a time and decodes the boards straight
+ * from the mapped buffer into arrays of the caller, so files of any length
+ * are read without allocating for each board. A Writer packs the boards
+ * into a buffer that is written to the file channel when full, and fills in
+ * the number of boards when closed. Both also work on boards held in memory
+ * or sent over a stream, e.g. by SolveServer, as long as the number of
+ * boards is known before the first is written.
+ *
+ * The main method converts between the text formats of PuzzleFormat and
+ * this one.
+ *
+ * Usage: java PackedFormat -pack puzzles.txt packed [-solutions file]
+ *        java PackedFormat -unpack packed puzzles.txt [-solutions file]
+ *                          [-comma]
+ **/
+public class PackedFormat {
+    static final int MAGIC = 0x53444b50; // "SDKP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int SOLUTIONS = 1; // flag of files with solutions
+    static final long WINDOW = 64 << 20; // bytes mapped at a time
+    static final int BUFFER = 1 << 20; // bytes written at a time
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("usage: PackedFormat -pack "
+                + "puzzles.txt packed | -unpack packed puzzles.txt "
+                + "[-solutions file] [-comma]");
+        }
+        String solutions = null;
+        boolean comma = false;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("-solutions") && i + 1 < args.length) {
+                solutions = args[++i];
+            } else if (args[i].equals("-comma")) {
+                comma = true;
+            } else {
+                throw new IllegalArgumentException("unknown option: "
+                    + args[i]);
+            }
+        }
+
+        long startTime = System.nanoTime();
+        long count;
+        if (args[0].equals("-pack")) {
+            count = pack(args[1], solutions, Paths.get(args[2]));
+        } else if (args[0].equals("-unpack")) {
+            count = unpack(Paths.get(args[1]), args[2], solutions, !comma);
+        } else {
+            throw new IllegalArgumentException("unknown option: " + args[0]);
+        }
+        long elapsed = System.nanoTime() - startTime;
+        System.err.println("converted " + count + " puzzles in "
+            + (elapsed / 1000000) + " ms");
+    }
+
+    /**
+     * packs the boards of a text file, one per line, and, if a second file
+     * is given, their solutions, one line per board; lines of the second
+     * file that hold no board, e.g. "no solution", are packed as none
+     * recorded. Returns the number of boards.
+     */
+    static long pack(String puzzles, String solutions, Path packed)
+            throws IOException {
+        long count = 0;
+        int[] puzzle = null;
+        int[] solution = null;
+        Writer out = null;
+        try (BufferedReader in = new BufferedReader(new FileReader(puzzles));
+                BufferedReader sin = (solutions == null ? null
+                    : new BufferedReader(new FileReader(solutions)))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                puzzle = PuzzleFormat.parse(line, puzzle);
+                if (out == null) {
+                    int size = (int)Math.sqrt(puzzle.length);
+                    out = new Writer(packed, size, sin != null);
+                    solution = new int[puzzle.length];
+                }
+                if (sin != null) {
+                    String result = sin.readLine();
+                    try {
+                        if (result == null) {
+                            throw new IllegalArgumentException("missing");
+                        }
+                        solution = PuzzleFormat.parse(result.trim(), solution);
+                    } catch (IllegalArgumentException iae) {
+                        java.util.Arrays.fill(solution, 0);
+                    }
+                    if (solution.length != puzzle.length) {
+                        solution = new int[puzzle.length];
+                    }
+                }
+                out.write(puzzle, solution);
+                count++;
+            }
+        } finally {
+            if (out != null) out.close();
+        }
+        return count;
+    }
+
+    /**
+     * writes the boards of a packed file as text, one per line, and their
+     * solutions, if the file has them and a second file is given, one line
+     * per board; returns the number of boards.
+     */
+    static long unpack(Path packed, String puzzles, String solutions,
+            boolean compact) throws IOException {
+        try (Reader in = new Reader(packed);
+                PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new FileWriter(puzzles)));
+                PrintWriter sout = (solutions == null ? null
+                    : new PrintWriter(new BufferedWriter(
+                        new FileWriter(solutions))))) {
+            if (sout != null && !in.solutions) {
+                throw new IllegalArgumentException(packed
+                    + " has no solutions");
+            }
+            int[] puzzle = new int[in.size * in.size];
+            int[] solution = new int[puzzle.length];
+            while (in.next(puzzle, solution)) {
+                out.println(PuzzleFormat.format(puzzle, compact));
+                if (sout != null) {
+                    sout.println(isEmpty(solution) ? "no solution"
+                        : PuzzleFormat.format(solution, compact));
+                }
+            }
+            return in.count;
+        }
+    }
+
+    /**
+     * returns the bits per position of a board of the given size.
+     */
+    static int bits(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * returns the bytes taken by a board of the given size.
+     */
+    static int boardBytes(int size) {
+        return (size * size * bits(size) + 7) / 8;
+    }
+
+    /**
+     * returns true if the board has no number filled in.
+     */
+    static boolean isEmpty(int[] grid) {
+        for (int value : grid) {
+            if (value != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * returns true if the file starts with the magic number of the packed
+     * format.
+     */
+    static boolean isPacked(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Reads the boards of a packed file in order. The file is mapped WINDOW
+     * bytes at a time, rounded down to whole records; a reader is confined
+     * to a single thread.
+     **/
+    static class Reader implements Closeable {
+        FileChannel channel;
+        int size; // length/breadth of the boards
+        int bits; // bits per position
+        boolean solutions; // each board is followed by its solution
+        long count; // boards in the file
+        int boardBytes; // bytes of a board
+        int recordBytes; // bytes of a board and its solution
+        long index; // board read next
+        ByteBuffer window; // the part of the file being read
+        long windowEnd = 0; // board after the last one in the window
+        int position; // offset of the next board in the window
+
+        Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining() && channel.read(header) >= 0) {
+                }
+                readHeader(header, channel.size(), file.toString());
+            } catch (IOException ioe) {
+                channel.close();
+                throw ioe;
+            }
+        }
+
+        /**
+         * reads the boards of a packed file held in the buffer, from its
+         * position to its limit; source names it in error messages.
+         */
+        Reader(ByteBuffer data, String source) throws IOException {
+            if (data.remaining() < HEADER_SIZE) {
+                throw new IOException(source + " is not a packed file");
+            }
+            ByteBuffer header = data.slice().limit(HEADER_SIZE);
+            readHeader(header.position(HEADER_SIZE), data.remaining(), source);
+            window = data.slice().position(HEADER_SIZE).slice();
+            windowEnd = count;
+        }
+
+        /**
+         * checks the header, read up to the position of the buffer, and
+         * takes the layout of the boards from it.
+         */
+        void readHeader(ByteBuffer header, long length, String source)
+                throws IOException {
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(source + " is not a packed file");
+            }
+            if (header.get(4) != VERSION) {
+                throw new IOException(source + " has unknown version "
+                    + header.get(4));
+            }
+            size = header.get(5) & 0xff;
+            bits = header.get(6);
+            solutions = (header.get(7) & SOLUTIONS) != 0;
+            count = header.getLong(8);
+            if (size == 0 || bits != bits(size) || count < 0) {
+                throw new IOException(source + " has a corrupt header");
+            }
+            boardBytes = boardBytes(size);
+            recordBytes = (solutions ? 2 * boardBytes : boardBytes);
+            // divided rather than multiplied, which overflows for a
+            // corrupt count
+            if (count > (length - HEADER_SIZE) / recordBytes) {
+                throw new IOException(source + " is truncated");
+            }
+        }
+
+        /**
+         * reads the next board, and its solution if the file has them and
+         * an array is given; returns false after the last board. The arrays
+         * must hold size * size positions.
+         */
+        boolean next(int[] puzzle, int[] solution) throws IOException {
+            if (index == count) return false;
+            if (index == windowEnd) map();
+            decode(position, puzzle);
+            if (solutions && solution != null) {
+                decode(position + boardBytes, solution);
+            }
+            position += recordBytes;
+            index++;
+            return true;
+        }
+
+        /**
+         * maps the window starting at the next board.
+         */
+        void map() throws IOException {
+            long boards = Math.min(count - index,
+                Math.max(1, WINDOW / recordBytes));
+            window = channel.map(FileChannel.MapMode.READ_ONLY,
+                HEADER_SIZE + index * recordBytes, boards * recordBytes);
+            windowEnd = index + boards;
+            position = 0;
+        }
+
+        /**
+         * unpacks the board at the given offset of the window.
+         */
+        void decode(int offset, int[] grid) throws IOException {
+            ByteBuffer buf = window;
+            int mask = (1 << bits) - 1;
+            long acc = 0; // bits read and not yet used, lowest last
+            int held = 0; // number of bits in acc
+            for (int p = 0; p < grid.length; p++) {
+                while (held < bits) {
+                    acc = (acc << 8) | (buf.get(offset++) & 0xff);
+                    held += 8;
+                }
+                held -= bits;
+                int value = (int)(acc >>> held) & mask;
+                if (value > size) {
+                    throw new IOException("corrupt board " + (index + 1)
+                        + ": " + value + " at position " + (p + 1));
+                }
+                grid[p] = value;
+            }
+        }
+
+        public void close() throws IOException {
+            window = null;
+            if (channel != null) channel.close();
+        }
+    }
+
+    /**
+     * Writes boards of one size to a packed file, replacing it, or to a
+     * stream. The number of boards is written to the header of a file when
+     * the writer is closed, and to that of a stream when it is opened; a
+     * writer is confined to a single thread.
+     **/
+    static class Writer implements Closeable {
+        WritableByteChannel channel;
+        int size; // length/breadth of the boards
+        int bits; // bits per position
+        boolean solutions; // each board is followed by its solution
+        long count; // boards written so far
+        long expected = -1; // boards to write to a stream; -1 for a file
+        ByteBuffer buffer;
+
+        Writer(Path file, int size, boolean solutions) throws IOException {
+            this(size, solutions, BUFFER);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.position(HEADER_SIZE);
+        }
+
+        /**
+         * writes the given number of boards to the stream, which is closed
+         * with the writer.
+         */
+        Writer(WritableByteChannel out, int size, boolean solutions,
+                long count) {
+            this(size, solutions, (int)Math.min(BUFFER, HEADER_SIZE
+                + count * 2 * boardBytes(size) + 2 * boardBytes(size)));
+            channel = out;
+            expected = count;
+            putHeader(buffer, count);
+        }
+
+        private Writer(int size, boolean solutions, int capacity) {
+            if (size < 1 || size > 255) {
+                throw new IllegalArgumentException("board size not packable: "
+                    + size);
+            }
+            this.size = size;
+            this.bits = bits(size);
+            this.solutions = solutions;
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        /**
+         * appends a board, and its solution if the file has solutions;
+         * a null solution is written as none recorded.
+         */
+        void write(int[] puzzle, int[] solution) throws IOException {
+            if (puzzle.length != size * size) {
+                throw new IllegalArgumentException("a " + size + "x" + size
+                    + " packed file cannot hold a board of "
+                    + puzzle.length + " positions");
+            }
+            if (buffer.remaining() < 2 * boardBytes(size)) flush();
+            encode(puzzle);
+            if (solutions) {
+                if (solution == null) {
+                    for (int i = boardBytes(size); i > 0; i--) {
+                        buffer.put((byte)0);
+                    }
+                } else {
+                    encode(solution);
+                }
+            }
+            count++;
+        }
+
+        /**
+         * packs the board into the buffer.
+         */
+        void encode(int[] grid) {
+            long acc = 0; // bits not yet written, lowest last
+            int held = 0; // number of bits in acc
+            for (int p = 0; p < grid.length; p++) {
+                acc = (acc << bits) | grid[p];
+                held += bits;
+                while (held >= 8) {
+                    held -= 8;
+                    buffer.put((byte)(acc >>> held));
+                }
+            }
+            if (held > 0) buffer.put((byte)(acc << (8 - held)));
+        }
+
+        /**
+         * writes the buffer to the file.
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * puts the header of a file of the given number of boards.
+         */
+        void putHeader(ByteBuffer header, long boards) {
+            header.putInt(MAGIC).put((byte)VERSION).put((byte)size)
+                .put((byte)bits).put((byte)(solutions ? SOLUTIONS : 0))
+                .putLong(boards);
+        }
+
+        /**
+         * writes the rest of the boards and the header and closes the file
+         * or stream.
+         */
+        public void close() throws IOException {
+            try {
+                flush();
+                if (expected >= 0) {
+                    if (count != expected) {
+                        throw new IOException("wrote " + count + " of "
+                            + expected + " boards");
+                    }
+                    return;
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                putHeader(header, count);
+                header.flip();
+                long at = 0;
+                FileChannel file = (FileChannel)channel;
+                while (header.hasRemaining()) {
+                    at += file.write(header, at);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
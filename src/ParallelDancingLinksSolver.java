@@ -0,0 +1,239 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ParallelDancingLinksSolver spreads the Dancing Links search for a
+ * single board over the threads of a ForkJoinPool. The first levels of the
+ * search tree are split into independent subproblems, one for each row of
+ * the chosen column, and every subproblem is searched on its own copy of the
+ * ArrayDancingLinksSolver matrix. The matrix the copies are made from is
+ * kept and restored for the next board.
+ *
+ * The tree is split until there are about tasksPerThread subproblems for
+ * each thread of the pool. Solutions are handed to this solver one at a time,
+ * so printing, counting and the solution limit work as for the other
+ * solvers; once the limit is reached the remaining subproblems are
+ * cancelled. When the listener only counts, the workers add to a shared counter
+ * instead. Each worker keeps its own statistics, which are added to those of
+ * this solver when its subproblem is done.
+ *
+ * The workers add the nodes they visit to a shared count every
+ * CHECK_INTERVAL nodes and check it against the node budget of the search,
+ * together with its deadline and the interrupt status of the thread that
+ * called solve; the first one to find the search out of budget cancels it.
+ **/
+public class ParallelDancingLinksSolver extends Solver {
+    int[] puzzle; // the board being solved, row by row
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int tasksPerThread = 16; // subproblems created for each pool thread
+    AtomicBoolean cancelled; // set when the search should stop
+    LongAdder counted; // solutions counted by the workers
+    AtomicLong visited; // nodes reported by the workers
+    Worker root; // holds the matrix, restored for the next board
+
+    public ParallelDancingLinksSolver(String[] input, String name) {
+        this(parseInput(input), name);
+    }
+
+    public ParallelDancingLinksSolver(int[] puzzle, String name) {
+        super(puzzle, name);
+        init2DArray(puzzle);
+        this.puzzle = puzzle.clone();
+    }
+
+    @Override
+    public void reset(int[] puzzle) {
+        super.reset(puzzle);
+        this.puzzle = puzzle.clone();
+    }
+
+    public void solve() {
+        cancelled = new AtomicBoolean();
+        counted = new LongAdder();
+        visited = new AtomicLong();
+        long start = stats.start();
+        startRun();
+        if (root == null) {
+            root = new Worker(this);
+        } else {
+            root.reset(puzzle);
+        }
+        root.buildMatrix();
+        if (SolverStats.ENABLED) {
+            stats.propagations += emptyPositions() - root.emptyPositions();
+        }
+        root.initLevels();
+        start = stats.built(start);
+        if (!root.unsolvable) {
+            pool.invoke(new SearchTask(root, 0,
+                pool.getParallelism() * tasksPerThread));
+        }
+        stats.searched(start);
+        nodes += visited.get();
+        if (timedOut) stats.timeout();
+        if (countOnly()) {
+            solutionCount += counted.intValue();
+            ((SolutionCollector)listener).addCount(counted.sum());
+            // the workers count them without calling foundSolution
+            if (SolverStats.ENABLED) stats.solutions += counted.sum();
+        }
+    }
+
+    /**
+     * returns true if the workers only need to count the solutions.
+     */
+    boolean countOnly() {
+        return listener instanceof SolutionCollector
+            && ((SolutionCollector)listener).countsOnly();
+    }
+
+    /**
+     * called by the workers for each solution found; returns false when the
+     * search should stop.
+     */
+    synchronized boolean report(int[] found) {
+        if (cancelled.get()) return false;
+        for (int i = 0; i < found.length; i++) {
+            board[i / size][i % size] = found[i];
+        }
+        boolean more = foundSolution();
+        if (!more) cancelled.set(true);
+        return more;
+    }
+
+    /**
+     * An ArrayDancingLinksSolver searching one subproblem; it stops when the
+     * search is cancelled and passes its solutions to the parent solver.
+     **/
+    static class Worker extends ArrayDancingLinksSolver {
+        ParallelDancingLinksSolver parent;
+        int[] found;
+        long reported; // nodes added to the count of the parent
+
+        Worker(ParallelDancingLinksSolver parent) {
+            super(parent.puzzle, parent.name);
+            this.parent = parent;
+        }
+
+        /**
+         * returns a worker with its own copy of the matrix, of the board
+         * with the positions filled in while building and of the rows
+         * selected so far; the parts that never change are shared.
+         */
+        Worker copy() {
+            Worker w = new Worker(parent);
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(board[i], 0, w.board[i], 0, size);
+            }
+            w.left = left.clone();
+            w.right = right.clone();
+            w.up = up.clone();
+            w.down = down.clone();
+            w.colSize = colSize.clone();
+            if (bucketed) {
+                w.bucketed = true;
+                w.bucketBase = bucketBase;
+                w.nextInSize = nextInSize.clone();
+                w.prevInSize = prevInSize.clone();
+            }
+            w.column = column;
+            w.candidate = candidate;
+            w.solution = solution.clone();
+            w.chosen = new int[chosen.length];
+            return w;
+        }
+
+        @Override
+        boolean nodeVisited() {
+            return parent.cancelled.get() || super.nodeVisited();
+        }
+
+        /**
+         * reports the nodes visited since the last check to the parent and
+         * cancels the search when it is out of budget.
+         */
+        @Override
+        boolean stopRun() {
+            reportNodes();
+            if (parent.outOfBudget(parent.nodes + parent.visited.get())) {
+                parent.timedOut = true;
+                parent.cancelled.set(true);
+                return true;
+            }
+            checkAt = nodes + CHECK_INTERVAL;
+            return false;
+        }
+
+        void reportNodes() {
+            parent.visited.addAndGet(nodes - reported);
+            reported = nodes;
+        }
+
+        @Override
+        boolean foundSolution() {
+            if (parent.countOnly()) {
+                parent.counted.increment();
+                return true;
+            }
+            if (found == null || found.length != size * size) {
+                found = new int[size * size];
+            }
+            copySolution(found);
+            return parent.report(found);
+        }
+    }
+
+    /**
+     * Searches the subproblem of a worker from level k, splitting it further
+     * while the budget of subproblems allows.
+     **/
+    static class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        Worker worker;
+        int k;
+        int budget; // number of subproblems this task may be split into
+
+        SearchTask(Worker worker, int k, int budget) {
+            this.worker = worker;
+            this.k = k;
+            this.budget = budget;
+        }
+
+        protected void compute() {
+            Worker w = worker;
+            if (w.parent.cancelled.get()) return;
+            if (budget <= 1 || w.right[0] == 0) {
+                w.search(k);
+                w.reportNodes();
+                w.parent.stats.add(w.stats);
+                return;
+            }
+            w.stats.enter();
+            w.parent.stats.add(w.stats);
+            int c = w.chooseColumn();
+            int branches = w.colSize[c];
+            if (branches == 0) return;
+
+            // one subproblem for each row of the column
+            List<SearchTask> tasks = new ArrayList<SearchTask>(branches);
+            for (int r = w.down[c]; r != c; r = w.down[r]) {
+                Worker child = w.copy();
+                child.stats.depth = k + 1;
+                child.cover(c);
+                child.solution[k] = r;
+                for (int j = child.right[r]; j != r; j = child.right[j]) {
+                    child.cover(child.column[j]);
+                }
+                tasks.add(new SearchTask(child, k + 1, budget / branches));
+            }
+            worker = null;
+            invokeAll(tasks);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The PortfolioSolver races several engines on the same board, each on a
+ * thread of its own, and takes the result of the first one to finish; the
+ * others are interrupted. Engines differ most on the boards one of them finds
+ * pathologically hard, so the race keeps the slowest boards close to the
+ * time of the fastest engine for each.
+ *
+ * The engine expected to be fastest is started first and given headStart
+ * nanoseconds on its own, which is enough for most boards and saves the
+ * other threads the work; the rest only join the race if it is still
+ * running by then. With a Ranking the expected order is learned from the
+ * engines that won before on boards of the same size and a similar number
+ * of givens, otherwise the engines are started in the order given.
+ *
+ * The first engine to report a solution claims the search: its solutions
+ * are passed to the listener, on the engine's thread, and the solutions of
+ * the other engines are dropped. The engines that lost stop in the
+ * background at their next budget check; the next solve waits for them
+ * before reusing their solvers. The time limit and node budget of this
+ * solver are passed on to each engine, and the search timed out if no
+ * engine finished within them.
+ **/
+public class PortfolioSolver extends Solver {
+    static final ExecutorService POOL = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "PortfolioSolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    int[] puzzle; // the board being solved, row by row
+    String[] engines = {"bitmask", "arraydlx", "arraydlx-last"};
+    Solver[] solvers; // one per engine; null if it cannot solve the board
+    ExecutorService pool = POOL;
+    long headStart = TimeUnit.MILLISECONDS.toNanos(1); // for the first engine
+    Ranking ranking; // learns the order of the engines; null for a fixed one
+
+    // the state of the race, guarded by this solver
+    Thread[] running; // thread of each engine while it searches
+    CountDownLatch[] idle; // released when each engine has stopped
+    CountDownLatch done; // released when the race is decided
+    int claimed; // engine whose solutions are passed on; -1 for none yet
+    int winner; // engine that finished first; -1 for none yet
+    int starting; // engines still to be started
+    int remaining; // engines started and still running
+
+    public PortfolioSolver(String[] input, String name) {
+        this(parseInput(input), name);
+    }
+
+    public PortfolioSolver(int[] puzzle, String name) {
+        super(puzzle, name);
+        init2DArray(puzzle);
+        this.puzzle = puzzle.clone();
+    }
+
+    @Override
+    public void reset(int[] puzzle) {
+        super.reset(puzzle);
+        this.puzzle = puzzle.clone();
+    }
+
+    public void solve() {
+        long start = stats.start();
+        startRun();
+        try {
+            race();
+        } catch (InterruptedException ie) {
+            cancel();
+            timedOut = true;
+            stats.timeout();
+            Thread.currentThread().interrupt();
+        }
+        stats.searched(start);
+    }
+
+    /**
+     * starts the engines in the expected order and waits for the first to
+     * finish.
+     */
+    void race() throws InterruptedException {
+        int n = engines.length;
+        if (solvers == null) {
+            solvers = new Solver[n];
+            running = new Thread[n];
+            idle = new CountDownLatch[n];
+        }
+        for (int i = 0; i < n; i++) {
+            if (idle[i] != null) idle[i].await();
+            idle[i] = null;
+            prepare(i);
+        }
+        int key = Ranking.key(size, size * size - emptyPositions());
+        int[] order = (ranking == null ? null : ranking.order(key, n));
+        synchronized (this) {
+            done = new CountDownLatch(1);
+            claimed = -1;
+            winner = -1;
+            starting = 0;
+            remaining = 0;
+            for (int i = 0; i < n; i++) {
+                if (solvers[i] != null) starting++;
+            }
+            if (starting == 0) done.countDown();
+        }
+        boolean first = true;
+        for (int x = 0; x < n; x++) {
+            int i = (order == null ? x : order[x]);
+            if (solvers[i] == null) continue;
+            start(i);
+            if (first && headStart > 0
+                    && done.await(headStart, TimeUnit.NANOSECONDS)) {
+                break;
+            }
+            first = false;
+        }
+        done.await();
+        cancel();
+
+        if (winner < 0) {
+            timedOut = true;
+            stats.timeout();
+            return;
+        }
+        Solver s = solvers[winner];
+        nodes += s.nodes;
+        stats.add(s.stats);
+        if (ranking != null) ranking.win(key, winner, n);
+    }
+
+    /**
+     * creates or resets the solver of engine i for the board; engines that
+     * cannot solve a board of this size are left out.
+     */
+    void prepare(int i) {
+        try {
+            if (solvers[i] == null) {
+                int engine = i;
+                solvers[i] = BatchSudoku.newSolver(engines[i], puzzle);
+                solvers[i].setListener(found -> report(engine, found));
+            } else {
+                solvers[i].reset(puzzle);
+            }
+        } catch (IllegalArgumentException iae) {
+            solvers[i] = null;
+            return;
+        }
+        solvers[i].setNodeBudget(nodeBudget);
+    }
+
+    /**
+     * starts engine i on a thread of the pool with the time left to this
+     * solver.
+     */
+    synchronized void start(int i) {
+        starting--;
+        if (winner >= 0) return;
+        if (timeLimit != 0) {
+            solvers[i].setTimeLimit(Math.max(1, deadline - System.nanoTime()),
+                TimeUnit.NANOSECONDS);
+        }
+        remaining++;
+        CountDownLatch race = done;
+        CountDownLatch stopped = new CountDownLatch(1);
+        idle[i] = stopped;
+        pool.execute(() -> {
+            boolean complete = false;
+            try {
+                synchronized (this) {
+                    if (race.getCount() == 0) return; // decided meanwhile
+                    running[i] = Thread.currentThread();
+                }
+                solvers[i].solve();
+                complete = !solvers[i].isTimedOut();
+            } finally {
+                finished(i, complete);
+                Thread.interrupted(); // a late cancel is not for the pool
+                stopped.countDown();
+            }
+        });
+    }
+
+    /**
+     * called by engine i when it stops; the first engine to finish its
+     * search, and that has not been beaten to a solution, decides the race,
+     * which is lost when every engine or the one that claimed it stops
+     * without finishing.
+     */
+    synchronized void finished(int i, boolean complete) {
+        running[i] = null;
+        remaining--;
+        if (winner < 0 && complete && (claimed < 0 || claimed == i)) {
+            winner = i;
+            done.countDown();
+        } else if ((remaining == 0 && starting == 0)
+                || (claimed == i && !complete)) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * called by engine i for each solution found; returns false when the
+     * engine should stop.
+     */
+    synchronized boolean report(int i, int[] found) {
+        if (claimed < 0) claimed = i;
+        if (claimed != i || winner >= 0) return false;
+        for (int p = 0; p < found.length; p++) {
+            board[p / size][p % size] = found[p];
+        }
+        return foundSolution();
+    }
+
+    /**
+     * interrupts the engines still running and ends the race.
+     */
+    synchronized void cancel() {
+        for (int i = 0; i < running.length; i++) {
+            if (running[i] != null) running[i].interrupt();
+        }
+        if (done != null) done.countDown();
+    }
+
+    /**
+     * returns the name of the engine that won the last race, or null if
+     * none finished.
+     */
+    public String getWinner() {
+        return (winner < 0 ? null : engines[winner]);
+    }
+
+    /**
+     * Learns which engine to start first from the engines that won before
+     * on similar boards: boards are grouped by size and by the share of
+     * positions given, in tenths, and the engines of a group are ordered by
+     * the number of races they won. A ranking may be shared by portfolio
+     * solvers with the same engines on any number of threads.
+     **/
+    static class Ranking {
+        ConcurrentHashMap<Integer, AtomicLongArray> wins
+            = new ConcurrentHashMap<>();
+
+        /**
+         * returns the group of a board of the given size with the given
+         * number of positions filled.
+         */
+        static int key(int size, int givens) {
+            return size * 16 + givens * 10 / (size * size);
+        }
+
+        /**
+         * returns the n engines ordered by their wins in the group, most
+         * first; ties keep the given order.
+         */
+        int[] order(int key, int n) {
+            AtomicLongArray counts = wins.get(key);
+            int[] order = new int[n];
+            for (int x = 0; x < n; x++) {
+                int y = x;
+                while (y > 0 && counts != null
+                        && counts.get(order[y - 1]) < counts.get(x)) {
+                    order[y] = order[y - 1];
+                    y--;
+                }
+                order[y] = x;
+            }
+            return order;
+        }
+
+        void win(int key, int engine, int n) {
+            wins.computeIfAbsent(key, k -> new AtomicLongArray(n))
+                .incrementAndGet(engine);
+        }
+    }
+}
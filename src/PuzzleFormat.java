@@ -0,0 +1,136 @@
+/**
+ * Reads and writes sudoku boards as single lines of text. Two formats are
+ * understood: the comma-delimited list of numbers accepted by Sudoku, and the
+ * compact format with one character per position, e.g. the common
+ * 81-character format, where empty positions are denoted by '.' or '0'.
+ * A compact board ends at the first blank, and whatever follows, such as a
+ * rating, is ignored.
+ *
+ * In the compact format the numbers 1 to 9 are written as digits and 10 to
+ * 35 as the letters 'A' to 'Z', so that boards of up to 35x35 fit; letters
+ * are accepted in either case. Larger boards go on with 'a' to 'z' for 36 to
+ * 61, and there the case matters.
+ *
+ * Boards are held row by row in an integer array with empty positions
+ * denoted by zeroes.
+ **/
+public class PuzzleFormat {
+
+    /**
+     * returns true if the line holds a board in the compact format.
+     */
+    static boolean isCompact(String line) {
+        return line.indexOf(',') < 0;
+    }
+
+    /**
+     * parses a board in either format; the given array is reused when it has
+     * the right length, otherwise a new one is returned.
+     *
+     * @param line
+     * @param puzzle
+     */
+    static int[] parse(String line, int[] puzzle) {
+        boolean compact = isCompact(line);
+        int positions = 1;
+        if (compact) {
+            positions = 0;
+            while (positions < line.length()
+                    && !Character.isWhitespace(line.charAt(positions))) {
+                positions++;
+            }
+        } else {
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == ',') positions++;
+            }
+        }
+        int size = (int)java.lang.Math.sqrt(positions);
+        if (size * size != positions) {
+            throw new IllegalArgumentException("not a square board: "
+                + positions + " positions");
+        }
+        if (puzzle == null || puzzle.length != positions) {
+            puzzle = new int[positions];
+        }
+
+        if (compact) {
+            for (int i = 0; i < positions; i++) {
+                char ch = line.charAt(i);
+                puzzle[i] = value(ch, size);
+                if (puzzle[i] < 0 || puzzle[i] > size) {
+                    throw new IllegalArgumentException("invalid position "
+                        + (i + 1) + ": " + ch);
+                }
+            }
+        } else {
+            int p = 0;
+            int value = 0;
+            boolean digits = false;
+            for (int i = 0; i <= line.length(); i++) {
+                char ch = (i < line.length() ? line.charAt(i) : ',');
+                if (ch == ',') {
+                    if (!digits || value > size) {
+                        throw new IllegalArgumentException("invalid position "
+                            + (p + 1));
+                    }
+                    puzzle[p++] = value;
+                    value = 0;
+                    digits = false;
+                } else if (ch >= '0' && ch <= '9') {
+                    value = value * 10 + (ch - '0');
+                    digits = true;
+                } else if (ch != ' ') {
+                    throw new IllegalArgumentException("invalid position "
+                        + (p + 1) + ": " + ch);
+                }
+            }
+        }
+        return puzzle;
+    }
+
+    /**
+     * returns the number denoted by a symbol of the compact format on a
+     * board of the given size, zero for an empty position, or -1 if the
+     * symbol denotes no number.
+     */
+    static int value(char ch, int size) {
+        if (ch == '.' || ch == '0') return 0;
+        if (ch >= '1' && ch <= '9') return ch - '0';
+        if (ch >= 'A' && ch <= 'Z') return ch - 'A' + 10;
+        if (ch >= 'a' && ch <= 'z') {
+            return (size <= 35 ? ch - 'a' + 10 : ch - 'a' + 36);
+        }
+        return -1;
+    }
+
+    /**
+     * returns the symbol of the compact format for a number; zero gives the
+     * symbol of an empty position.
+     */
+    static char symbol(int value) {
+        if (value == 0) return '.';
+        if (value <= 9) return (char)('0' + value);
+        if (value <= 35) return (char)('A' + value - 10);
+        if (value <= 61) return (char)('a' + value - 36);
+        throw new IllegalArgumentException("no symbol for " + value);
+    }
+
+    /**
+     * formats a board in the compact or in the comma-delimited format.
+     *
+     * @param grid
+     * @param compact
+     */
+    static String format(int[] grid, boolean compact) {
+        StringBuilder sb = new StringBuilder(grid.length * 2);
+        for (int i = 0; i < grid.length; i++) {
+            if (compact) {
+                sb.append(symbol(grid[i]));
+            } else {
+                if (i > 0) sb.append(',');
+                sb.append(grid[i]);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,267 @@
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates sudoku boards with a unique solution and rates how hard they
+ * are. A board is made by filling the regions on the diagonal with random
+ * permutations and solving the rest, which gives a random full grid, and
+ * then removing clues in random order as long as the solution stays unique.
+ * Each check that the solution stays unique may visit CHECK_BUDGET search
+ * nodes, a tenth of that on boards larger than 16x16, whose nodes cost
+ * more; a clue whose check runs over the budget is kept. So the boards are
+ * minimal, with no clue left that can be removed, as long as no check ran
+ * over. On 9x9 and 16x16 boards no check does, and larger boards come out
+ * with a few more clues than needed instead of taking hours. The budget is
+ * counted in nodes rather than time, so runs stay reproducible.
+ *
+ * The rating follows the techniques needed to solve the board: "easy"
+ * boards fall to naked singles alone, "medium" boards also need hidden
+ * singles and "hard" boards need guessing. The number of search nodes the
+ * BitmaskSolver visits is given as a finer score.
+ *
+ * Board n is generated from a random generator seeded with the seed and n
+ * alone, so a run is reproducible whatever the number of threads. The boards
+ * are generated in chunks on a work-stealing pool and written in order, one
+ * per line in the compact format, followed by the rating and the score.
+ *
+ * Usage: java PuzzleGenerator [-count n] [-size n] [-seed n]
+ *                             [-difficulty easy|medium|hard] [-threads n]
+ **/
+public class PuzzleGenerator {
+    static final String[] RATINGS = {"easy", "medium", "hard"};
+    static final int CHUNK_SIZE = 64; // boards generated by one task
+    static final int CHUNKS_PER_THREAD = 4; // reorder buffer per thread
+    static final long CHECK_BUDGET = 20000; // search nodes per check
+
+    int size; // length/breadth of the board
+    int boxRows; // number of rows in a region
+    int boxCols; // number of columns in a region
+    long seed;
+    long checkBudget; // search nodes per check
+    int difficulty = -1; // rating the boards must have; -1 for any
+    BitmaskSolver solver; // reset for every check
+    SolutionCollector collector = SolutionCollector.first();
+
+    // the board being generated and its rating
+    int[] puzzle;
+    int rating;
+    long score;
+
+    public PuzzleGenerator(int size, long seed) {
+        this.size = size;
+        this.seed = seed;
+        boxRows = Solver.boxRows(size);
+        boxCols = size / boxRows;
+        checkBudget = (size <= 16 ? CHECK_BUDGET : CHECK_BUDGET / 10);
+        puzzle = new int[size * size];
+        solver = new BitmaskSolver(puzzle, "PuzzleGenerator");
+        solver.setListener(collector);
+    }
+
+    public static void main(String[] args)
+            throws InterruptedException, ExecutionException {
+        int count = 1;
+        int size = 9;
+        long seed = System.nanoTime();
+        int difficulty = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("usage: PuzzleGenerator "
+                    + "[-count n] [-size n] [-seed n] "
+                    + "[-difficulty easy|medium|hard] [-threads n]; "
+                    + args[i] + " has no value");
+            }
+            if (args[i].equals("-count")) {
+                count = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-size")) {
+                size = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("-difficulty")) {
+                difficulty = java.util.Arrays.asList(RATINGS)
+                    .indexOf(args[i + 1]);
+                if (difficulty < 0) {
+                    throw new IllegalArgumentException("unknown difficulty: "
+                        + args[i + 1]);
+                }
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("unknown option: "
+                    + args[i]);
+            }
+        }
+        System.err.println("seed " + seed);
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out)));
+        long startTime = System.nanoTime();
+        generate(size, seed, difficulty, count, threads, out);
+        out.flush();
+
+        long elapsed = System.nanoTime() - startTime;
+        System.err.println("generated " + count + " puzzles in "
+            + (elapsed / 1000000) + " ms ("
+            + (long)(count * 1e9 / Math.max(elapsed, 1)) + " puzzles/second)");
+    }
+
+    /**
+     * generates boards 0 to (count - 1) in chunks on the given number of
+     * threads and writes them in order.
+     */
+    static void generate(int size, long seed, int difficulty, int count,
+            int threads, PrintWriter out)
+            throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        ThreadLocal<PuzzleGenerator> generators
+            = ThreadLocal.withInitial(() -> {
+                PuzzleGenerator generator = new PuzzleGenerator(size, seed);
+                generator.difficulty = difficulty;
+                return generator;
+            });
+        ArrayDeque<Future<String[]>> pending = new ArrayDeque<>();
+        try {
+            for (int first = 0; first < count; first += CHUNK_SIZE) {
+                if (pending.size() == threads * CHUNKS_PER_THREAD) {
+                    BatchSudoku.write(pending.removeFirst().get(), out);
+                }
+                int from = first;
+                int to = Math.min(count, first + CHUNK_SIZE);
+                pending.addLast(pool.submit(() -> {
+                    PuzzleGenerator generator = generators.get();
+                    String[] lines = new String[to - from];
+                    for (int n = from; n < to; n++) {
+                        generator.generate(n);
+                        lines[n - from] = generator.toString();
+                    }
+                    return lines;
+                }));
+            }
+            while (!pending.isEmpty()) {
+                BatchSudoku.write(pending.removeFirst().get(), out);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * generates board n, trying again until it has the requested rating;
+     * the board is left in puzzle and its rating in rating and score.
+     */
+    public int[] generate(long n) {
+        Random random = new Random(seed ^ (n * 0x9E3779B97F4A7C15L));
+        do {
+            fillGrid(random);
+            removeClues(random);
+            rate();
+        } while (difficulty >= 0 && rating != difficulty);
+        return puzzle;
+    }
+
+    /**
+     * fills puzzle with a random full grid: the regions on the diagonal,
+     * which share no row or column, get random permutations and the solver
+     * completes the rest.
+     */
+    void fillGrid(Random random) {
+        int[] numbers = new int[size];
+        for (int x = 0; x < size; x++) numbers[x] = x + 1;
+        while (true) {
+            java.util.Arrays.fill(puzzle, 0);
+            for (int box = 0; box < Math.min(boxRows, boxCols); box++) {
+                shuffle(numbers, random);
+                for (int x = 0; x < size; x++) {
+                    int i = box * boxRows + x / boxCols;
+                    int j = box * boxCols + x % boxCols;
+                    puzzle[i * size + j] = numbers[x];
+                }
+            }
+            solver.reset(puzzle);
+            collector.clear();
+            solver.setNodeBudget(checkBudget);
+            solver.solve();
+            solver.setNodeBudget(0);
+            if (collector.getCount() > 0) break; // else try other regions
+        }
+        System.arraycopy(collector.getFirst(), 0, puzzle, 0, puzzle.length);
+    }
+
+    /**
+     * removes the clues of the full grid in random order, putting back each
+     * one without which the solution would no longer be unique, or could
+     * not be shown to be within the budget of a check. The solver keeps the
+     * remaining clues as givens throughout, so each check is a single
+     * search for a solution with another number at the position.
+     */
+    void removeClues(Random random) {
+        int[] order = new int[puzzle.length];
+        for (int p = 0; p < order.length; p++) order[p] = p;
+        shuffle(order, random);
+        solver.reset(puzzle);
+        solver.setNodeBudget(checkBudget);
+        for (int p : order) {
+            int value = puzzle[p];
+            solver.removeGiven(p);
+            if (solver.hasOtherSolution(p, value) || solver.isTimedOut()) {
+                solver.addGiven(p, value);
+            } else {
+                puzzle[p] = 0;
+            }
+        }
+        solver.setNodeBudget(0);
+    }
+
+    /**
+     * rates the board by the techniques needed to solve it and sets its
+     * score to the number of search nodes visited.
+     */
+    void rate() {
+        solver.hiddenSingles = false;
+        solver.reset(puzzle);
+        solver.propagate();
+        if (solver.emptyCount == 0) {
+            rating = 0;
+        } else {
+            solver.hiddenSingles = true;
+            solver.reset(puzzle);
+            solver.propagate();
+            rating = (solver.emptyCount == 0 ? 1 : 2);
+        }
+        solver.hiddenSingles = true;
+        solver.reset(puzzle);
+        collector.clear();
+        solver.solve();
+        score = solver.nodes;
+    }
+
+    /**
+     * shuffles the array in place.
+     */
+    static void shuffle(int[] values, Random random) {
+        for (int x = values.length - 1; x > 0; x--) {
+            int y = random.nextInt(x + 1);
+            int tmp = values[x];
+            values[x] = values[y];
+            values[y] = tmp;
+        }
+    }
+
+    /**
+     * returns the board in the compact format followed by its rating and
+     * score.
+     */
+    @Override
+    public String toString() {
+        return PuzzleFormat.format(puzzle, size <= 61) + " "
+            + RATINGS[rating] + " " + score;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Base class of the solvers that keep their search on an explicit stack
+ * instead of the call stack, so that a search stopped part way, because the
+ * listener asked to stop, the node limit was reached or the run timed out,
+ * is left suspended and can be continued with resume.
+ **/
+public abstract class ResumableSolver extends Solver {
+
+    public ResumableSolver(int[] puzzle, String name) {
+        super(puzzle, name);
+    }
+
+    @Override
+    public boolean resume() {
+        if (!suspended) return false;
+        long start = stats.start();
+        startRun();
+        runSearch();
+        stats.searched(start);
+        return suspended;
+    }
+
+    /**
+     * continues the suspended search up to the next stop; sets suspended if
+     * it stopped before it was complete.
+     */
+    abstract void runSearch();
+}
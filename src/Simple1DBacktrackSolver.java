@@ -2,34 +2,103 @@
  * The Simple1DBacktrackSolver class solves a sudoku board represented by a
  * one-dimensional array using a very simple back-tracking algorithm.
  **/
-public class Simple1DBacktrackSolver extends Solver {
+public class Simple1DBacktrackSolver extends ResumableSolver {
     int[] position;
+    int[] empty; // positions empty at the start
+    int emptyCount;
+    int level; // number of empty positions filled
 
     public Simple1DBacktrackSolver(String[] input, String name) {
-        super(input, name);
-        init1DArray(input);
+        this(parseInput(input), name);
+    }
+
+    public Simple1DBacktrackSolver(int[] puzzle, String name) {
+        super(puzzle, name);
+        init1DArray(puzzle);
+    }
+
+    @Override
+    public void reset(int[] puzzle) {
+        super.reset(puzzle);
+        init1DArray(puzzle);
     }
 
     public void solve() {
-        solve1D(0);
+        long start = stats.start();
+        initSearch();
+        startRun();
+        solve1D();
+        stats.searched(start);
+    }
+
+    @Override
+    void runSearch() {
+        solve1D();
+    }
+
+    /**
+     * lists the empty positions and starts the search at the first one; the
+     * positions of a search left suspended are cleared first. Givens that
+     * conflict with each other leave nothing to search.
+     **/
+    void initSearch() {
+        if (suspended) {
+            for (int e = 0; e < emptyCount; e++) position[empty[e]] = 0;
+        }
+        if (empty == null || empty.length != position.length) {
+            empty = new int[position.length];
+        }
+        emptyCount = 0;
+        for (int i = 0; i < position.length; i++) {
+            if (position[i] == 0) empty[emptyCount++] = i;
+        }
+        for (int i = 0; i < position.length; i++) {
+            if (position[i] != 0 && !isPositionValid(i)) {
+                level = -1;
+                return;
+            }
+        }
+        level = 0;
+        stats.enter();
     }
 
-    boolean solve1D(int i) {
-        while (i < position.length) {
-            if (position[i] == 0) {
-                while (position[i] < size) {
-                    position[i]++;
-                    if (isPositionValid(i)) {
-                        boolean isSolved = solve1D(i + 1);
-                        if (isSolved) printSolution();
-                    }
+    /**
+     * fills the empty positions from the current level onwards, going back a
+     * level when a position has no valid number left; sets suspended if the
+     * search stopped before it was complete.
+     **/
+    void solve1D() {
+        while (level >= 0) {
+            if (level == emptyCount) {
+                boolean more = foundSolution();
+                stats.leave();
+                level--;
+                if (!more) {
+                    suspended = true;
+                    return;
                 }
+                continue;
+            }
+            int i = empty[level];
+            if (position[i] != 0) stats.backtrack();
+            position[i]++;
+            while (position[i] <= size && !isPositionValid(i)) {
+                stats.backtrack();
+                position[i]++;
+            }
+            if (position[i] > size) {
                 position[i] = 0;
-                return false;
+                stats.leave();
+                level--;
+                continue;
+            }
+            level++;
+            stats.enter();
+            if (nodeVisited()) {
+                suspended = true;
+                return;
             }
-            i++;
         }
-        return true;
     }
 
     boolean isPositionValid(int i) {
@@ -44,17 +113,17 @@ public class Simple1DBacktrackSolver extends Solver {
         // check region:
         // to validate only one occurrence of a number exists in a given region,
         // we first representing the position as a region coordinate {a, b},
-        // where a = {0, ..., rSize - 1} and b = {0, ..., rSize - 1}
-        int a = i / (size * rSize);
-        int b = (i % size) / rSize;
+        // where a = {0, ..., boxCols - 1} and b = {0, ..., boxRows - 1}
+        int a = i / (size * boxRows);
+        int b = (i % size) / boxCols;
 
         // k represents the top-left-most position of the given region
-        int k = a * size * rSize + b * rSize;
+        int k = a * size * boxRows + b * boxCols;
 
         // for each row within the region
-        for (int n = 0; n < rSize; n++) {
+        for (int n = 0; n < boxRows; n++) {
             // for each column within the region
-            for (int x = k + n * size; x < k + n * size + rSize; x++) {
+            for (int x = k + n * size; x < k + n * size + boxCols; x++) {
                 if (position[x] == position[i] && x != i) return false;
             }
         }
@@ -62,11 +131,16 @@ public class Simple1DBacktrackSolver extends Solver {
         return true;
     }
 
-    void init1DArray(String[] input) {
-        position = new int[input.length];
-        for (int i = 0; i < input.length; i++) {
-            position[i] = Integer.parseInt(input[i]);
+    void init1DArray(int[] puzzle) {
+        if (position == null || position.length != puzzle.length) {
+            position = new int[puzzle.length];
         }
+        System.arraycopy(puzzle, 0, position, 0, puzzle.length);
+    }
+
+    @Override
+    void copySolution(int[] dest) {
+        System.arraycopy(position, 0, dest, 0, position.length);
     }
 
     /**
@@ -2,23 +2,71 @@
  * The Simple2DBacktrackSolver class solves a sudoku board represented by a
  * two-dimensional array using a very simple back-tracking algorithm.
  **/
-public class Simple2DBacktrackSolver extends Solver {
+public class Simple2DBacktrackSolver extends ResumableSolver {
+    int[] empty; // positions empty at the start, as (row * size + column)
+    int emptyCount;
+    int level; // number of empty positions filled
 
     public Simple2DBacktrackSolver(String[] input, String name) {
-        super(input, name);
-        init2DArray(input);
+        this(parseInput(input), name);
+    }
+
+    public Simple2DBacktrackSolver(int[] puzzle, String name) {
+        super(puzzle, name);
+        init2DArray(puzzle);
     }
 
     public void solve() {
+        long start = stats.start();
+        initSearch();
+        startRun();
 	solve2D();
+        stats.searched(start);
+    }
+
+    @Override
+    void runSearch() {
+        solve2D();
+    }
+
+    /**
+     * lists the empty positions of the board and starts the search at the
+     * first one; the positions of a search left suspended are cleared first.
+     * Givens that conflict with each other leave nothing to search.
+     */
+    void initSearch() {
+        if (suspended) {
+            for (int e = 0; e < emptyCount; e++) {
+                board[empty[e] / size][empty[e] % size] = 0;
+            }
+        }
+        if (empty == null || empty.length != size * size) {
+            empty = new int[size * size];
+        }
+        emptyCount = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (board[i][j] == 0) empty[emptyCount++] = i * size + j;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (board[i][j] != 0 && !isPositionValid(i, j)) {
+                    level = -1;
+                    return;
+                }
+            }
+        }
+        level = 0;
+        stats.enter();
     }
 
     /**
      * attempts to solve a sudoku board represented by a two-dimensional array;
-     * returns true if the board is solved and false otherwise.
+     * sets suspended if the search stopped before it was complete.
      *
-     * This is a recursive procedure that attempts to place a number (1 - size)
-     * in an empty slot and verifies if the position is valid. If
+     * This is a back-tracking procedure that attempts to place a number
+     * (1 - size) in an empty slot and verifies if the position is valid. If
      * it is, it proceeds to the next empty slot. Otherwise, it tries again by
      * incrementing the number. When all possible numbers are tried for the
      * position, it backtracks to the previous position and tries by
@@ -29,35 +77,56 @@ public class Simple2DBacktrackSolver extends Solver {
      * The numbers 1 - size are tried sequentionally. The position is validated
      * on request, against the other entries in the row, column and region.
      *
+     * The empty slots are listed once before the search, and level is the
+     * number of them filled so far, so the search needs no recursion and can
+     * be suspended and resumed at any level.
+     *
      * The total number of iterations may be minimized by using a smarter
      * selection logic and using additional storage, e.g. boolean arrays for
      * validating the position.
      *
      **/
-    boolean solve2D() {
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (board[i][j] == 0) {
-                    while (board[i][j] < size) {
-                        board[i][j]++;
-                        if (isPositionValid(i, j)) {
-	                    boolean isSolved = solve2D();
-		            if (isSolved) printSolution();
-                        }
-                    }
-                    board[i][j] = 0;
-                    return false;
+    void solve2D() {
+        while (level >= 0) {
+            if (level == emptyCount) {
+                // all slots are filled
+                boolean more = foundSolution();
+                stats.leave();
+                level--;
+                if (!more) {
+                    suspended = true;
+                    return;
                 }
+                continue;
+            }
+            int i = empty[level] / size;
+            int j = empty[level] % size;
+            if (board[i][j] != 0) stats.backtrack();
+            board[i][j]++;
+            while (board[i][j] <= size && !isPositionValid(i, j)) {
+                stats.backtrack();
+                board[i][j]++;
+            }
+            if (board[i][j] > size) {
+                board[i][j] = 0;
+                stats.leave();
+                level--;
+                continue;
+            }
+            level++;
+            stats.enter();
+            if (nodeVisited()) {
+                suspended = true;
+                return;
             }
         }
-	return true;
     }
 
     /**
      * returns true if the current position is valid, i.e., conforms to sudoku
      * rules that only one occurrence of a given number is allowed in a given
      * row, column and region.
-     * A region is a sqrt(n) * sqrt(n) mini-grid within the n * n board.
+     * A region is a boxRows * boxCols mini-grid within the n * n board.
      *
      **/
     boolean isPositionValid(int i, int j) {
@@ -76,8 +145,10 @@ public class Simple2DBacktrackSolver extends Solver {
             }
         }
         // check region
-	for (int x = (i / rSize) * rSize; x < ((i / rSize) + 1) * rSize; x++) {
-            for (int y = (j / rSize) * rSize; y < ((j / rSize) + 1) * rSize; y++) {
+        int top = (i / boxRows) * boxRows;
+        int left = (j / boxCols) * boxCols;
+	for (int x = top; x < top + boxRows; x++) {
+            for (int y = left; y < left + boxCols; y++) {
                 if (board[i][j] == board[x][y] && (i != x || j != y)) {
                     // region check failed
                     return false;
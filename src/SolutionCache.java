@@ -0,0 +1,219 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A bounded cache of the solutions of boards in the canonical form of
+ * CanonicalForm, shared by the CachingSolvers of any number of threads.
+ * For each board it holds up to two solutions and whether these are all
+ * the board has, which is enough to answer a search for the first solution
+ * and a check of uniqueness; the boards and solutions are kept with a byte
+ * per position.
+ *
+ * When the cache is full the least recently used board is evicted. The
+ * hits, misses and evictions are counted and can be watched over JMX, and
+ * the cache can be saved to a file and loaded again, least recently used
+ * first, to warm it up for the next run.
+ **/
+public class SolutionCache implements SolutionCacheMXBean {
+    static final int MAGIC = 0x53444b43; // "SDKC"
+    static final int MAX_SOLUTIONS = 2; // solutions kept for each board
+
+    int capacity; // boards kept at most
+    LinkedHashMap<Key, Entry> entries; // in order of use, eldest first
+    long hits;
+    long misses;
+    long evictions;
+
+    public SolutionCache(int capacity) {
+        this.capacity = capacity;
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> e) {
+                if (size() <= SolutionCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * returns the entry of the canonical board, or null if it is not in
+     * the cache, and counts a hit or a miss.
+     */
+    synchronized Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    synchronized void put(Key key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    /**
+     * registers the cache with the platform MBean server under the name
+     * sudoku:type=SolutionCache,name=(name).
+     */
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+            new ObjectName("sudoku:type=SolutionCache,name=" + name));
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        return (hits + misses == 0 ? 0 : (double)hits / (hits + misses));
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "cache hits " + hits + ", misses " + misses + ", hit rate "
+            + String.format("%.1f%%", 100 * getHitRate()) + ", evictions "
+            + evictions + ", size " + entries.size() + " of " + capacity;
+    }
+
+    /**
+     * writes the boards of the cache to the file, least recently used
+     * first.
+     */
+    public synchronized void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+                byte[] cells = e.getKey().cells;
+                Entry entry = e.getValue();
+                out.writeInt(cells.length);
+                out.write(cells);
+                out.writeBoolean(entry.complete);
+                out.writeByte(entry.solutions.length);
+                for (byte[] solution : entry.solutions) {
+                    out.write(solution);
+                }
+            }
+        }
+    }
+
+    /**
+     * adds the boards saved in the file to the cache; returns the number of
+     * boards read.
+     */
+    public int load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a saved SolutionCache");
+            }
+            int count = in.readInt();
+            for (int n = 0; n < count; n++) {
+                byte[] cells = new byte[in.readInt()];
+                in.readFully(cells);
+                boolean complete = in.readBoolean();
+                byte[][] solutions = new byte[in.readByte()][cells.length];
+                for (byte[] solution : solutions) {
+                    in.readFully(solution);
+                }
+                put(new Key(cells), new Entry(solutions, complete));
+            }
+            return count;
+        } catch (EOFException eofe) {
+            throw new IOException(file + " is truncated", eofe);
+        }
+    }
+
+    /**
+     * returns the board with a byte per position; boards up to 255x255 fit.
+     */
+    static byte[] pack(int[] grid) {
+        byte[] cells = new byte[grid.length];
+        for (int p = 0; p < grid.length; p++) {
+            cells[p] = (byte)grid[p];
+        }
+        return cells;
+    }
+
+    static void unpack(byte[] cells, int[] grid) {
+        for (int p = 0; p < cells.length; p++) {
+            grid[p] = cells[p] & 0xff;
+        }
+    }
+
+    /**
+     * A canonical board, a byte per position, as the key of the cache.
+     **/
+    static final class Key {
+        final byte[] cells;
+        final int hash;
+
+        Key(byte[] cells) {
+            this.cells = cells;
+            hash = java.util.Arrays.hashCode(cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key)o).hash
+                && java.util.Arrays.equals(cells, ((Key)o).cells);
+        }
+    }
+
+    /**
+     * The solutions known of a canonical board, a byte per position, and
+     * whether they are all it has; an entry is not changed once cached.
+     **/
+    static final class Entry {
+        final byte[][] solutions;
+        final boolean complete;
+
+        Entry(byte[][] solutions, boolean complete) {
+            this.solutions = solutions;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * The management interface of SolutionCache, through which its hit rate
+ * and evictions can be watched over JMX, e.g. with jconsole.
+ **/
+public interface SolutionCacheMXBean {
+    long getHits();
+    long getMisses();
+    double getHitRate();
+    long getEvictions();
+    int getSize();
+    int getCapacity();
+    void clear();
+}
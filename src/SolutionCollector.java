@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A SolutionListener for the common ways of using a Solver: finding the
+ * first solution, counting all solutions, or finding up to a given number of
+ * solutions. The collector counts the solutions it receives and keeps copies
+ * of them unless it only counts.
+ **/
+public class SolutionCollector implements SolutionListener {
+    int limit; // stop after this many solutions; zero finds them all
+    boolean keep; // keep copies of the solutions
+    long count; // number of solutions received
+    List<int[]> solutions = new ArrayList<int[]>();
+
+    public SolutionCollector(int limit, boolean keep) {
+        this.limit = limit;
+        this.keep = keep;
+    }
+
+    /**
+     * returns a collector that stops at the first solution and keeps it.
+     */
+    public static SolutionCollector first() {
+        return new SolutionCollector(1, true);
+    }
+
+    /**
+     * returns a collector that counts all solutions without keeping them.
+     */
+    public static SolutionCollector count() {
+        return new SolutionCollector(0, false);
+    }
+
+    /**
+     * returns a collector that stops after n solutions and keeps them.
+     */
+    public static SolutionCollector upTo(int n) {
+        return new SolutionCollector(n, true);
+    }
+
+    public boolean solutionFound(int[] grid) {
+        count++;
+        if (keep) solutions.add(grid.clone());
+        return limit == 0 || count < limit;
+    }
+
+    /**
+     * returns true if the collector only counts, so that solvers may count
+     * solutions without reporting them one by one.
+     */
+    boolean countsOnly() {
+        return limit == 0 && !keep;
+    }
+
+    /**
+     * adds solutions counted without being reported.
+     */
+    void addCount(long n) {
+        count += n;
+    }
+
+    /**
+     * forgets the solutions received, so that the collector can be used for
+     * the next board.
+     */
+    public void clear() {
+        count = 0;
+        solutions.clear();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * returns the first solution kept, or null if there is none.
+     */
+    public int[] getFirst() {
+        return (solutions.isEmpty() ? null : solutions.get(0));
+    }
+
+    public List<int[]> getSolutions() {
+        return solutions;
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Receives the solutions found by a Solver, as an alternative to printing
+ * them to sysout.
+ **/
+public interface SolutionListener {
+
+    /**
+     * called for each solution found. The grid holds the numbers of the
+     * solution row by row; the solver reuses the array, so it has to be
+     * copied to be kept. Returns true to continue the search for further
+     * solutions and false to stop it.
+     */
+    boolean solutionFound(int[] grid);
+}
@@ -0,0 +1,745 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+
+/**
+ * Solves sudoku boards sent over HTTP, for callers that have boards to
+ * solve one at a time but should not pay for starting a JVM, and warming up
+ * its JIT, for each of them. The server runs on the HttpServer of the JDK,
+ * which keeps connections open between requests, so a client can send its
+ * requests one after another, or pipelined, on a single connection.
+ *
+ * POST /solve takes the boards in the body: one per line in either format
+ * understood by PuzzleFormat, as a JSON array of such strings, or as a file
+ * in the packed format of PackedFormat. GET /solve?puzzle=... solves a
+ * single board. With unique=true the search stops at the second solution,
+ * as with BatchSudoku -unique. The answer to text and JSON requests is a
+ * JSON object with a result for each board, in order, and the microseconds
+ * the request took on the server:
+ *
+ *   {"results":[{"status":"solved","solution":"..."},
+ *               {"status":"none"}],"micros":42}
+ *
+ * where the status is solved, unique, multiple, none, timeout or invalid,
+ * the last with an error. With format=text the answer is instead the output
+ * lines of BatchSudoku. A packed request is answered with a packed file of
+ * the boards and their solutions, none recorded for boards not solved.
+ *
+ * Requests are not solved on the threads that handle them. Their boards are
+ * queued, and a single thread takes them off the queue in batches of up to
+ * BatchSudoku.CHUNK_SIZE boards, from as many requests as are waiting,
+ * which are solved by the Workers of BatchSudoku on a pool of solver
+ * threads. Each solver thread keeps its worker, and so its solver, for as
+ * long as the server runs. When the solver threads are busy, no more than a
+ * few batches per thread wait for them, and the boards arriving meanwhile
+ * wait in the queue to form larger batches; so a lone request is solved
+ * right away and a burst of small requests is solved in few batches.
+ *
+ * A request of more than MAX_BOARDS boards or MAX_CELLS positions, or one
+ * the server has no memory left for, is refused with 413.
+ *
+ * GET /stats answers the number of requests, boards and batches so far and
+ * percentiles of the time the last LATENCIES requests took on the server, in
+ * microseconds, and the hits and misses of the cache if there is one.
+ *
+ * The server listens on the loopback address unless -host says otherwise;
+ * -engine, -threads, -timeout, -nodes and -cache are as for BatchSudoku.
+ * With -warmup the boards of a file are solved before the server starts
+ * listening, so the first requests do not wait for the JIT.
+ *
+ * Usage: java SolveServer [-port n] [-host address] [-engine name]
+ *                         [-threads n] [-handlers n] [-timeout ms]
+ *                         [-nodes n] [-cache n] [-warmup file]
+ **/
+public class SolveServer {
+    static final int DEFAULT_PORT = 8080;
+    static final int MAX_BODY = 64 << 20; // bytes of a request at most
+    static final int MAX_BOARDS = 1 << 16; // boards of a request at most
+    static final int MAX_CELLS = 1 << 23; // positions of a request at most
+    static final int LATENCIES = 1 << 14; // requests kept for percentiles
+    static final int BATCHES_PER_THREAD = 4; // batches waiting per thread
+
+    String engine;
+    int threads; // solver threads
+    long timeout; // milliseconds per board; zero for any
+    long budget; // search nodes per board; zero for any
+    SolutionCache cache; // shared by the workers; null for none
+    SolverStats total = new SolverStats(); // statistics of all boards
+    HttpServer server;
+    ExecutorService pool; // solves the batches
+    ThreadLocal<BatchSudoku.Worker> workers;
+    Semaphore slots; // batches that may be given to the pool
+    LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    Thread batcher;
+
+    LongAdder requests = new LongAdder();
+    LongAdder boards = new LongAdder();
+    LongAdder batches = new LongAdder();
+    long[] latencies = new long[LATENCIES]; // microseconds, a ring
+    long latencyCount; // requests timed so far
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        String engine = "bitmask";
+        String host = null;
+        String warmup = null;
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int handlers = 64;
+        long timeout = 0;
+        long budget = 0;
+        SolutionCache cache = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-host") && i + 1 < args.length) {
+                host = args[++i];
+            } else if (args[i].equals("-engine") && i + 1 < args.length) {
+                engine = args[++i];
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-handlers") && i + 1 < args.length) {
+                handlers = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-timeout") && i + 1 < args.length) {
+                timeout = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-nodes") && i + 1 < args.length) {
+                budget = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-cache") && i + 1 < args.length) {
+                cache = new SolutionCache(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-warmup") && i + 1 < args.length) {
+                warmup = args[++i];
+            } else {
+                throw new IllegalArgumentException("unknown option: "
+                    + args[i]);
+            }
+        }
+        BatchSudoku.newSolver(engine.equals("lanes") ? "bitmask" : engine,
+            new int[81]); // rejects an unknown engine before listening
+
+        SolveServer solveServer = new SolveServer(engine, threads, timeout,
+            budget, cache);
+        try {
+            if (SolverStats.ENABLED) solveServer.total.register("SolveServer");
+            if (cache != null) cache.register("SolveServer");
+        } catch (JMException jme) {
+            System.err.println("statistics not published: " + jme);
+        }
+        if (warmup != null) {
+            long startTime = System.nanoTime();
+            int count = solveServer.warmUp(warmup);
+            System.err.println("warmed up on " + count + " puzzles in "
+                + (System.nanoTime() - startTime) / 1000000 + " ms");
+        }
+        InetAddress address = (host == null ? InetAddress.getLoopbackAddress()
+            : InetAddress.getByName(host));
+        solveServer.start(new InetSocketAddress(address, port), handlers);
+        System.err.println("listening on " + address.getHostAddress() + ":"
+            + solveServer.server.getAddress().getPort());
+    }
+
+    SolveServer(String engine, int threads, long timeout, long budget,
+            SolutionCache cache) {
+        this.engine = engine;
+        this.threads = threads;
+        this.timeout = timeout;
+        this.budget = budget;
+        this.cache = cache;
+        pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "SolveServer solver");
+            thread.setDaemon(true); // the server threads keep the JVM alive
+            return thread;
+        });
+        workers = ThreadLocal.withInitial(
+            () -> new BatchSudoku.Worker(engine, false, false, timeout,
+                budget, cache));
+        slots = new Semaphore(threads * BATCHES_PER_THREAD);
+        batcher = new Thread(this::dispatch, "SolveServer batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    /**
+     * starts answering requests on the address, on the given number of
+     * threads.
+     */
+    void start(InetSocketAddress address, int handlers) throws IOException {
+        // else a response on a kept-alive connection waits for the client
+        // to acknowledge the previous one
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+        server.setExecutor(Executors.newFixedThreadPool(handlers));
+        server.start();
+    }
+
+    /**
+     * stops answering requests, waiting up to the given number of seconds
+     * for the requests being answered, and stops the solver threads.
+     */
+    void stop(int seconds) {
+        if (server != null) {
+            server.stop(seconds);
+            ((ExecutorService)server.getExecutor()).shutdown();
+        }
+        batcher.interrupt();
+        pool.shutdownNow();
+    }
+
+    /**
+     * solves the boards of the file, one per line, as a request would, so
+     * that the solvers are compiled before the first request; returns the
+     * number of boards.
+     */
+    int warmUp(String file) throws IOException, InterruptedException {
+        ArrayList<String> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                lines.add(line);
+            }
+        }
+        for (boolean unique : new boolean[] { false, true }) {
+            solve(new Job(lines.toArray(new String[0]), unique));
+        }
+        return lines.size();
+    }
+
+    /**
+     * queues the open boards of the job and waits until they are solved.
+     */
+    void solve(Job job) throws InterruptedException {
+        if (job.open == 0) return;
+        queue.add(job);
+        job.done.await();
+    }
+
+    /**
+     * takes the queued boards in batches of boards of the same mode and
+     * gives them to the pool as soon as it has room for them, until
+     * interrupted.
+     */
+    void dispatch() {
+        Job job = null; // the job whose boards are being batched
+        int next = 0; // its first open board not batched
+        try {
+            while (true) {
+                if (job == null) {
+                    job = queue.take();
+                    next = 0;
+                }
+                slots.acquire();
+                Batch batch = new Batch(job.unique);
+                while (job != null && job.unique == batch.unique
+                        && batch.chunk.count < BatchSudoku.CHUNK_SIZE) {
+                    next = batch.add(job, next);
+                    if (next == job.open) {
+                        job = queue.poll();
+                        next = 0;
+                    }
+                }
+                batches.increment();
+                pool.execute(batch);
+            }
+        } catch (InterruptedException ie) {
+            // the server is stopping
+        }
+    }
+
+    void handleSolve(HttpExchange exchange) throws IOException {
+        long startTime = System.nanoTime();
+        try (exchange) {
+            try {
+                answer(exchange, startTime);
+            } catch (OutOfMemoryError oome) {
+                // within the limits of a request, but too many at once
+                if (exchange.getResponseCode() != -1) throw oome;
+                send(exchange, 413, "text/plain",
+                    "request too large for the memory left");
+            }
+        } finally {
+            latency((System.nanoTime() - startTime) / 1000);
+        }
+    }
+
+    /**
+     * answers a request to /solve.
+     */
+    void answer(HttpExchange exchange, long startTime) throws IOException {
+        HashMap<String, String> query = query(exchange);
+        String method = exchange.getRequestMethod();
+        boolean unique = Boolean.parseBoolean(query.get("unique"));
+        Job job;
+        byte[] body = null;
+        PackedFormat.Reader packed = null;
+        if (method.equals("GET")) {
+            if (!query.containsKey("puzzle")) {
+                send(exchange, 400, "text/plain",
+                    "GET /solve?puzzle=board");
+                return;
+            }
+            job = new Job(new String[] { query.get("puzzle") }, unique);
+        } else if (method.equals("POST")) {
+            body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                send(exchange, 413, "text/plain", "request too large");
+                return;
+            }
+            if (body.length >= 4 && ByteBuffer.wrap(body).getInt(0)
+                    == PackedFormat.MAGIC) {
+                try {
+                    packed = new PackedFormat.Reader(
+                        ByteBuffer.wrap(body), "request");
+                    String refused = refuse(packed.count, packed.count
+                        * packed.size * packed.size);
+                    if (refused != null) {
+                        send(exchange, 413, "text/plain", refused);
+                        return;
+                    }
+                    job = new Job(packed, unique);
+                } catch (IOException ioe) {
+                    send(exchange, 400, "text/plain", ioe.getMessage());
+                    return;
+                }
+            } else {
+                String text = new String(body, StandardCharsets.UTF_8);
+                String[] lines = (text.trim().startsWith("[")
+                    ? jsonStrings(text) : lines(text));
+                if (lines == null) {
+                    send(exchange, 400, "text/plain",
+                        "not an array of strings");
+                    return;
+                }
+                long chars = 0; // no fewer than the positions
+                for (String line : lines) chars += line.length();
+                String refused = refuse(lines.length, chars);
+                if (refused != null) {
+                    send(exchange, 413, "text/plain", refused);
+                    return;
+                }
+                job = new Job(lines, unique);
+            }
+        } else {
+            send(exchange, 405, "text/plain",
+                "POST boards or GET /solve?puzzle=board");
+            return;
+        }
+
+        requests.increment();
+        boards.add(job.count);
+        try {
+            solve(job);
+        } catch (InterruptedException ie) {
+            send(exchange, 503, "text/plain", "server stopping");
+            return;
+        }
+        if (packed != null) {
+            sendPacked(exchange, job, packed.size);
+        } else if ("text".equals(query.get("format"))) {
+            send(exchange, 200, "text/plain", job.text());
+        } else {
+            long micros = (System.nanoTime() - startTime) / 1000;
+            send(exchange, 200, "application/json", job.json(micros));
+        }
+    }
+
+    void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long[] sorted;
+            long count;
+            synchronized (this) {
+                count = latencyCount;
+                sorted = java.util.Arrays.copyOf(latencies,
+                    (int)Math.min(count, LATENCIES));
+            }
+            java.util.Arrays.sort(sorted);
+            long batchCount = batches.sum();
+            StringBuilder json = new StringBuilder();
+            json.append("{\"requests\":").append(requests.sum())
+                .append(",\"boards\":").append(boards.sum())
+                .append(",\"batches\":").append(batchCount)
+                .append(",\"p50\":").append(percentile(sorted, 50))
+                .append(",\"p90\":").append(percentile(sorted, 90))
+                .append(",\"p99\":").append(percentile(sorted, 99))
+                .append(",\"max\":").append(percentile(sorted, 100));
+            if (cache != null) {
+                json.append(",\"cacheHits\":").append(cache.getHits())
+                    .append(",\"cacheMisses\":").append(cache.getMisses());
+            }
+            send(exchange, 200, "application/json", json.append('}')
+                .toString());
+        }
+    }
+
+    /**
+     * records the microseconds a request took.
+     */
+    synchronized void latency(long micros) {
+        latencies[(int)(latencyCount++ % LATENCIES)] = micros;
+    }
+
+    /**
+     * returns the given percentile of the sorted values, zero if none.
+     */
+    static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        int i = (int)Math.ceil(sorted.length * percent / 100.0) - 1;
+        return sorted[Math.max(i, 0)];
+    }
+
+    /**
+     * returns the parameters of the query string of the request.
+     */
+    static HashMap<String, String> query(HttpExchange exchange) {
+        HashMap<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return query;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = (eq < 0 ? pair : pair.substring(0, eq));
+            String value = (eq < 0 ? "true" : pair.substring(eq + 1));
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    /**
+     * reads the body of a request; returns null if it is over MAX_BODY
+     * bytes.
+     */
+    static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        return (body.length > MAX_BODY ? null : body);
+    }
+
+    /**
+     * returns why a request with the given numbers of boards and positions
+     * is refused, or null if it is within MAX_BOARDS and MAX_CELLS.
+     */
+    static String refuse(long boards, long cells) {
+        if (boards > MAX_BOARDS) {
+            return boards + " boards, more than " + MAX_BOARDS;
+        }
+        if (cells > MAX_CELLS) {
+            return cells + " positions, more than " + MAX_CELLS;
+        }
+        return null;
+    }
+
+    /**
+     * returns the lines of the text, skipping blank lines and comments.
+     */
+    static String[] lines(String text) {
+        ArrayList<String> lines = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            lines.add(line);
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    /**
+     * returns the strings of a JSON array of strings, or null if the text
+     * is not one. Boards need no escapes, so only \" and \\ are understood.
+     */
+    static String[] jsonStrings(String text) {
+        ArrayList<String> strings = new ArrayList<>();
+        int i = text.indexOf('[') + 1;
+        StringBuilder string = new StringBuilder();
+        boolean expectValue = true; // nothing but a string may come next
+        while (true) {
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i == text.length()) return null;
+            char ch = text.charAt(i++);
+            if (ch == ']' && (strings.isEmpty() || !expectValue)) break;
+            if (ch == ',' && !expectValue) {
+                expectValue = true;
+                continue;
+            }
+            if (ch != '"' || !expectValue) return null;
+            string.setLength(0);
+            while (i < text.length() && (ch = text.charAt(i++)) != '"') {
+                if (ch == '\\' && i < text.length()) ch = text.charAt(i++);
+                string.append(ch);
+            }
+            if (ch != '"') return null;
+            strings.add(string.toString());
+            expectValue = false;
+        }
+        return (text.substring(i).isBlank()
+            ? strings.toArray(new String[0]) : null);
+    }
+
+    /**
+     * returns the string as a JSON string literal.
+     */
+    static String quote(String string) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                quoted.append('\\').append(ch);
+            } else if (ch < ' ') {
+                quoted.append(String.format("\\u%04x", (int)ch));
+            } else {
+                quoted.append(ch);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    static void send(HttpExchange exchange, int status, String type,
+            String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+            type + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * answers a packed request with a packed file of its boards and their
+     * solutions.
+     */
+    static void sendPacked(HttpExchange exchange, Job job, int size)
+            throws IOException {
+        long length = PackedFormat.HEADER_SIZE
+            + 2L * job.count * PackedFormat.boardBytes(size);
+        exchange.getResponseHeaders().set("Content-Type",
+            "application/octet-stream");
+        exchange.sendResponseHeaders(200, length);
+        try (PackedFormat.Writer out = new PackedFormat.Writer(
+                Channels.newChannel(exchange.getResponseBody()), size, true,
+                job.count)) {
+            for (int i = 0; i < job.count; i++) {
+                out.write(job.puzzles[i], job.results[i]
+                    == BatchSudoku.SOLVED ? job.solutions[i] : null);
+            }
+        }
+    }
+
+    /**
+     * The boards of one request and their results. The boards that parsed
+     * are open until solved; the request waits for the last of them.
+     **/
+    static class Job {
+        boolean unique; // check that the solutions are unique
+        int count; // boards of the request
+        String[] lines; // the boards as sent; null for a packed request
+        int[][] puzzles;
+        int[][] solutions;
+        int[] results; // SOLVED, INVALID or as Solver
+        String[] errors; // why the boards that did not parse did not
+        int[] openBoards; // boards to solve, in order
+        int open; // number of boards to solve
+        AtomicInteger unsolved = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        Job(String[] lines, boolean unique) {
+            this(lines.length, unique);
+            this.lines = lines;
+            for (int i = 0; i < count; i++) {
+                try {
+                    puzzles[i] = PuzzleFormat.parse(lines[i], null);
+                    open(i);
+                } catch (IllegalArgumentException iae) {
+                    results[i] = BatchSudoku.INVALID;
+                    errors[i] = iae.getMessage();
+                }
+            }
+            unsolved.set(open);
+        }
+
+        Job(PackedFormat.Reader packed, boolean unique) throws IOException {
+            this(Math.toIntExact(packed.count), unique);
+            int cells = packed.size * packed.size;
+            for (int i = 0; i < count; i++) {
+                puzzles[i] = new int[cells];
+                packed.next(puzzles[i], null);
+                open(i);
+            }
+            unsolved.set(open);
+        }
+
+        private Job(int count, boolean unique) {
+            this.count = count;
+            this.unique = unique;
+            puzzles = new int[count][];
+            solutions = new int[count][];
+            results = new int[count];
+            errors = new String[count];
+            openBoards = new int[count];
+        }
+
+        void open(int i) {
+            solutions[i] = new int[puzzles[i].length];
+            openBoards[open++] = i;
+        }
+
+        /**
+         * counts the given number of boards solved and lets the request go
+         * on after the last.
+         */
+        void solved(int boards) {
+            if (unsolved.addAndGet(-boards) == 0) done.countDown();
+        }
+
+        /**
+         * returns the output lines of BatchSudoku for the boards.
+         */
+        String text() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                if (results[i] == BatchSudoku.INVALID) {
+                    text.append("invalid puzzle: ").append(errors[i]);
+                } else {
+                    text.append(BatchSudoku.output(results[i], solutions[i],
+                        lines == null || PuzzleFormat.isCompact(lines[i])));
+                }
+                text.append('\n');
+            }
+            return text.toString();
+        }
+
+        /**
+         * returns the results of the boards as a JSON object.
+         */
+        String json(long micros) {
+            StringBuilder json = new StringBuilder("{\"results\":[");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) json.append(',');
+                json.append("{\"status\":\"");
+                int result = results[i];
+                if (result == BatchSudoku.INVALID) {
+                    json.append("invalid\",\"error\":").append(
+                        quote(errors[i])).append('}');
+                    continue;
+                } else if (result == Solver.NO_SOLUTION) {
+                    json.append("none\"}");
+                    continue;
+                } else if (result == Solver.MULTIPLE) {
+                    json.append("multiple\"}");
+                    continue;
+                } else if (result == Solver.TIMED_OUT) {
+                    json.append("timeout\"}");
+                    continue;
+                }
+                json.append(unique ? "unique" : "solved")
+                    .append("\",\"solution\":\"").append(PuzzleFormat.format(
+                        solutions[i], lines == null
+                        || PuzzleFormat.isCompact(lines[i])))
+                    .append("\"}");
+            }
+            return json.append("],\"micros\":").append(micros).append('}')
+                .toString();
+        }
+    }
+
+    /**
+     * Open boards of one or more jobs, solved together by one worker. The
+     * chunk holds the arrays of the jobs, so the solutions are written
+     * straight into them.
+     **/
+    class Batch implements Runnable {
+        boolean unique;
+        BatchSudoku.Chunk chunk = new BatchSudoku.Chunk();
+        Job[] jobs = new Job[BatchSudoku.CHUNK_SIZE]; // of each board
+        int[] boards = new int[BatchSudoku.CHUNK_SIZE]; // index in its job
+
+        Batch(boolean unique) {
+            this.unique = unique;
+            chunk.packed = true;
+        }
+
+        /**
+         * adds open boards of the job, from the given one on, while there is
+         * room; returns the first open board not added.
+         */
+        int add(Job job, int next) {
+            while (next < job.open && chunk.count < BatchSudoku.CHUNK_SIZE) {
+                int i = job.openBoards[next++];
+                int n = chunk.count++;
+                jobs[n] = job;
+                boards[n] = i;
+                chunk.puzzles[n] = job.puzzles[i];
+                chunk.solutions[n] = job.solutions[i];
+            }
+            return next;
+        }
+
+        public void run() {
+            try {
+                BatchSudoku.Worker worker = workers.get();
+                worker.unique = unique;
+                worker.solveAll(chunk);
+                if (SolverStats.ENABLED) {
+                    total.add(worker.stats);
+                    worker.stats.clear();
+                }
+            } catch (RuntimeException re) {
+                workers.get().solver = null; // may be left mid-search
+                solveEach();
+            } finally {
+                slots.release();
+                int run = 0; // boards of the current job so far
+                for (int n = 0; n < chunk.count; n++) {
+                    jobs[n].results[boards[n]] = chunk.results[n];
+                    run++;
+                    if (n + 1 == chunk.count || jobs[n + 1] != jobs[n]) {
+                        jobs[n].solved(run);
+                        run = 0;
+                    }
+                }
+            }
+        }
+
+        /**
+         * solves the boards one at a time after the batch failed, so that a
+         * board the engine cannot take fails alone.
+         */
+        void solveEach() {
+            BatchSudoku.Worker worker = workers.get();
+            for (int n = 0; n < chunk.count; n++) {
+                if (worker.solver == null) worker.collector.clear();
+                try {
+                    chunk.results[n] = worker.solve(chunk.puzzles[n],
+                        chunk.solutions[n]);
+                } catch (RuntimeException re) {
+                    worker.solver = null; // may be left mid-search
+                    chunk.results[n] = BatchSudoku.INVALID;
+                    jobs[n].errors[boards[n]] = "not solved: " + re;
+                }
+            }
+        }
+    }
+}
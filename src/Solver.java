@@ -3,33 +3,137 @@
  * algorithm is implemented in the sub-class by implementing the solve  method.
  */
 public abstract class Solver {
+    public static final int NO_SOLUTION = 0;
+    public static final int UNIQUE = 1;
+    public static final int MULTIPLE = 2;
+    public static final int TIMED_OUT = 3;
+    static final int CHECK_INTERVAL = 1024; // nodes between budget checks
+
     int[][] board; // maintains current selections of the board
     int size; // length/breadth of the board
-    int rSize; // length/breadth of the region/box
+    int boxRows; // number of rows in a region/box
+    int boxCols; // number of columns in a region/box
     long startTime;
     long endTime;
     int solutionCount;
     String name; // name of the solving strategy/algorithm
+    SolutionListener listener; // receives the solutions; printed when null
+    int[] grid; // the solution passed to the listener, row by row
+    SolverStats stats = new SolverStats(); // kept when SolverStats.ENABLED
+    long nodes; // nodes of the search tree visited since the last reset
+    long nodeLimit; // nodes a run may visit before suspending; zero for any
+    long suspendAt = Long.MAX_VALUE; // node count suspending this run
+    boolean suspended; // the search was stopped and can be resumed
+    long timeLimit; // nanoseconds a run may take; zero for any
+    long nodeBudget; // nodes a run may visit before timing out; zero for any
+    long deadline; // System.nanoTime() at which the run times out
+    long budgetAt = Long.MAX_VALUE; // node count timing out this run
+    long checkAt; // node count at which the budget is checked next
+    Thread runner; // thread running the search, checked for interrupts
+    boolean timedOut; // the last run ran out of budget or was interrupted
 
-    public Solver(String[] input, String name) {
-        size = (int)java.lang.Math.sqrt(input.length);
-	rSize = (int)java.lang.Math.sqrt(size);
+    public Solver(int[] puzzle, String name) {
+        setSize(puzzle.length);
         this.name = name;
     }
 
     /**
-     * initializes a 2D integer array representing the sudoku board from the
-     * input String array.
+     * converts the comma-delimited input to an integer array, row by row,
+     * with empty positions denoted by zeroes; numbers outside 0 to size are
+     * rejected.
      *
      * @param input
      */
-    void init2DArray(String[] input) {
-        board = new int[size][size];
+    static int[] parseInput(String[] input) {
+        int size = (int)java.lang.Math.sqrt(input.length);
+        int[] puzzle = new int[input.length];
+        for (int i = 0; i < input.length; i++) {
+            puzzle[i] = Integer.parseInt(input[i].trim());
+            if (puzzle[i] < 0 || puzzle[i] > size) {
+                throw new IllegalArgumentException("invalid position "
+                    + (i + 1) + ": " + input[i]);
+            }
+        }
+        return puzzle;
+    }
+
+    /**
+     * derives the size of the board and of its regions from the number of
+     * positions.
+     */
+    void setSize(int positions) {
+        size = (int)java.lang.Math.sqrt(positions);
+        if (size == 0 || size * size != positions) {
+            throw new IllegalArgumentException("not a square board: "
+                + positions + " positions");
+        }
+	boxRows = boxRows(size);
+        boxCols = size / boxRows;
+    }
+
+    /**
+     * returns the number of rows in a region of a board of the given size.
+     * Regions are as square as the size allows and never taller than wide,
+     * e.g. 3x3 on a 9x9 board, 2x3 on a 6x6 board and 3x4 on a 12x12 board;
+     * a prime size leaves regions of a single row.
+     */
+    static int boxRows(int size) {
+        int rows = (int)java.lang.Math.sqrt(size);
+        while (rows > 1 && size % rows != 0) rows--;
+        return rows;
+    }
+
+    /**
+     * initializes a 2D integer array representing the sudoku board from the
+     * puzzle; the array is reused when the size of the board is unchanged.
+     *
+     * @param puzzle
+     */
+    void init2DArray(int[] puzzle) {
+        if (board == null || board.length != size) {
+            board = new int[size][size];
+        }
         for (int i = 0; i < size * size; i++) {
-            if (!input[i].equals("0")) {
-                board[i / size][i % size] = Integer.parseInt(input[i]);
+            board[i / size][i % size] = puzzle[i];
+        }
+    }
+
+    /**
+     * prepares the solver for a new puzzle, reusing its storage where
+     * possible; sub-classes keeping additional state override this.
+     *
+     * @param puzzle
+     */
+    public void reset(int[] puzzle) {
+        setSize(puzzle.length);
+        solutionCount = 0;
+        nodes = 0;
+        suspended = false;
+        timedOut = false;
+        stats.clear();
+        init2DArray(puzzle);
+    }
+
+    /**
+     * returns the counters of the work done since the solver was created or
+     * last reset; they are only kept when SolverStats.ENABLED is set.
+     */
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * returns the number of empty positions on the board; used to count the
+     * positions filled in while building.
+     */
+    int emptyPositions() {
+        int empty = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (board[i][j] == 0) empty++;
             }
         }
+        return empty;
     }
 
     /**
@@ -37,11 +141,195 @@ public abstract class Solver {
      */
     public abstract void solve();
 
+    /**
+     * resets the solver to the given puzzle and solves it; every solver
+     * reuses its storage for boards of the same size, so solving many
+     * boards with one instance allocates little or nothing per board.
+     *
+     * @param puzzle
+     */
+    public void solve(int[] puzzle) {
+        reset(puzzle);
+        solve();
+    }
+
+    /**
+     * sets the listener receiving the solutions found; with no listener
+     * every solution is printed to sysout.
+     *
+     * @param listener
+     */
+    public void setListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * limits the time each run of the search may take, i.e. each solve or
+     * resume; a run out of time stops with isTimedOut set. Zero removes the
+     * limit.
+     *
+     * @param time
+     * @param unit
+     */
+    public void setTimeLimit(long time, java.util.concurrent.TimeUnit unit) {
+        timeLimit = unit.toNanos(time);
+    }
+
+    /**
+     * limits the number of nodes each run of the search may visit; a run
+     * over the budget stops with isTimedOut set. Zero removes the limit.
+     *
+     * @param nodes
+     */
+    public void setNodeBudget(long nodes) {
+        nodeBudget = nodes;
+    }
+
+    /**
+     * returns true if the last run of the search was stopped before it was
+     * complete because it ran out of time or nodes, or because the thread
+     * running it was interrupted. The solutions found until then have been
+     * passed to the listener and the statistics cover the work done; the
+     * solvers that can be suspended may be resumed with a new budget.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * continues a search that was suspended, because the listener asked to
+     * stop, the node limit was reached or the run timed out, up to the next
+     * stop; returns true if the search was suspended again and false once it
+     * is complete. Only the solvers that keep their search on an explicit
+     * stack, the ResumableSolvers, can be suspended; the others run each
+     * search to the end or abandon it, so this returns false for them.
+     */
+    public boolean resume() {
+        return false;
+    }
+
+    /**
+     * starts a run of the search on the current thread, which may visit
+     * nodeLimit nodes before it is suspended and is given timeLimit and
+     * nodeBudget before it times out.
+     */
+    void startRun() {
+        suspended = false;
+        timedOut = false;
+        suspendAt = (nodeLimit == 0 ? Long.MAX_VALUE : nodes + nodeLimit);
+        budgetAt = (nodeBudget == 0 ? Long.MAX_VALUE : nodes + nodeBudget);
+        deadline = System.nanoTime() + timeLimit;
+        runner = Thread.currentThread();
+        checkAt = 0;
+    }
+
+    /**
+     * called by the solvers at every node of the search; returns true if the
+     * search should stop there. Only a counter is compared on most nodes;
+     * the clock and the interrupt status are read every CHECK_INTERVAL
+     * nodes.
+     */
+    boolean nodeVisited() {
+        return ++nodes >= checkAt && stopRun();
+    }
+
+    /**
+     * returns true if the run should stop at this node, setting timedOut if
+     * it is out of budget; otherwise sets the node count of the next check.
+     */
+    boolean stopRun() {
+        if (outOfBudget(nodes)) {
+            timedOut = true;
+            stats.timeout();
+            return true;
+        }
+        if (nodes >= suspendAt) return true;
+        checkAt = Math.min(Math.min(suspendAt, budgetAt),
+            nodes + CHECK_INTERVAL);
+        return false;
+    }
+
+    /**
+     * returns true if a run that has visited the given number of nodes is
+     * over its node budget or deadline, or its thread was interrupted; the
+     * interrupt status is left set for the caller.
+     */
+    boolean outOfBudget(long visited) {
+        return visited >= budgetAt
+            || (timeLimit != 0 && System.nanoTime() - deadline >= 0)
+            || (runner != null && runner.isInterrupted());
+    }
+
+    /**
+     * solves the board only as far as needed to tell whether it has no
+     * solution, a unique solution or more than one; the search stops at the
+     * second solution and nothing is printed. Returns NO_SOLUTION, UNIQUE or
+     * MULTIPLE, or TIMED_OUT if the search timed out before it could tell;
+     * for a unique board getSolution returns the solution.
+     */
+    public int checkUniqueness() {
+        SolutionListener saved = listener;
+        SolutionCollector collector = new SolutionCollector(2, false);
+        listener = collector;
+        try {
+            solve();
+        } finally {
+            listener = saved;
+        }
+        int count = (int)collector.getCount();
+        return (timedOut && count < MULTIPLE ? TIMED_OUT : count);
+    }
+
+    /**
+     * returns the last solution passed to the listener, row by row, or null
+     * if there is none; the array is reused by the next search.
+     */
+    public int[] getSolution() {
+        return (solutionCount == 0 ? null : grid);
+    }
+
+    /**
+     * called by the sub-classes for each solution found; passes the
+     * solution to the listener, or prints it when there is none, and
+     * returns false when the search should stop.
+     */
+    boolean foundSolution() {
+        stats.solution();
+        if (listener == null) {
+            printSolution();
+            return true;
+        }
+        solutionCount++;
+        if (grid == null || grid.length != size * size) {
+            grid = new int[size * size];
+        }
+        copySolution(grid);
+        return listener.solutionFound(grid);
+    }
+
+    /**
+     * copies the solution found, row by row, to the given array.
+     */
+    void copySolution(int[] dest) {
+        updateBoard();
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(board[i], 0, dest, i * size, size);
+        }
+    }
+
+    /**
+     * brings the board up to date with the solution found; sub-classes
+     * that keep their selections elsewhere override this.
+     */
+    void updateBoard() {
+    }
+
     public void printInput() {
         print(name + " Input");
     }
 
     public void printSolution() {
+        updateBoard();
         print(name + " Solution " + ++solutionCount);
     }
 
@@ -62,4 +350,4 @@ public abstract class Solver {
         System.out.println(sb.toString());
     }
 
-}
\ No newline at end of file
+}
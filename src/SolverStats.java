@@ -0,0 +1,184 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts the work done by a Solver: the nodes of the search tree visited,
+ * the choices taken back, the deepest level reached, the columns covered and
+ * uncovered by the Dancing Links solvers, the positions filled in by
+ * propagation, the solutions found, the runs that timed out and the time
+ * spent building the solver's structures and searching, in nanoseconds.
+ *
+ * The counters are only kept when the sudoku.stats system property is set.
+ * Every update goes through a method that tests the constant ENABLED, so
+ * when it is false the JIT compiler reduces the calls to nothing.
+ *
+ * The counters of a solver are updated by the one thread running it. A
+ * total shared between threads is updated with add and read over JMX, so
+ * add, clear, toString and the getters hold the lock of the object.
+ **/
+public class SolverStats implements SolverStatsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("sudoku.stats");
+
+    long nodes; // nodes of the search tree visited
+    long backtracks; // choices taken back
+    int depth; // current level of the search
+    int maxDepth; // deepest level reached
+    long covers; // columns covered
+    long uncovers; // columns uncovered
+    long propagations; // positions filled in by propagation
+    long solutions; // solutions found
+    long timeouts; // runs stopped by their budget or an interrupt
+    long buildTime; // nanoseconds spent building
+    long searchTime; // nanoseconds spent searching
+
+    void enter() {
+        if (!ENABLED) return;
+        nodes++;
+        if (++depth > maxDepth) maxDepth = depth;
+    }
+
+    void leave() {
+        if (ENABLED) depth--;
+    }
+
+    void backtrack() {
+        if (ENABLED) backtracks++;
+    }
+
+    void cover() {
+        if (ENABLED) covers++;
+    }
+
+    void uncover() {
+        if (ENABLED) uncovers++;
+    }
+
+    void propagation() {
+        if (ENABLED) propagations++;
+    }
+
+    void solution() {
+        if (ENABLED) solutions++;
+    }
+
+    void timeout() {
+        if (ENABLED) timeouts++;
+    }
+
+    /**
+     * returns the start time of a phase, or zero when the counters are not
+     * kept.
+     */
+    long start() {
+        return (ENABLED ? System.nanoTime() : 0);
+    }
+
+    /**
+     * adds the time since start to the build time; returns the current
+     * time as the start of the search.
+     */
+    long built(long start) {
+        if (!ENABLED) return 0;
+        long now = System.nanoTime();
+        buildTime += now - start;
+        return now;
+    }
+
+    /**
+     * adds the time since start to the search time.
+     */
+    void searched(long start) {
+        if (ENABLED) searchTime += System.nanoTime() - start;
+    }
+
+    /**
+     * adds the counters of another solver, e.g. to total a batch of boards
+     * or the workers of a parallel search.
+     */
+    public synchronized void add(SolverStats other) {
+        nodes += other.nodes;
+        backtracks += other.backtracks;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        covers += other.covers;
+        uncovers += other.uncovers;
+        propagations += other.propagations;
+        solutions += other.solutions;
+        timeouts += other.timeouts;
+        buildTime += other.buildTime;
+        searchTime += other.searchTime;
+    }
+
+    public synchronized void clear() {
+        nodes = 0;
+        backtracks = 0;
+        depth = 0;
+        maxDepth = 0;
+        covers = 0;
+        uncovers = 0;
+        propagations = 0;
+        solutions = 0;
+        timeouts = 0;
+        buildTime = 0;
+        searchTime = 0;
+    }
+
+    /**
+     * registers the counters with the platform MBean server under the name
+     * sudoku:type=SolverStats,name=(name).
+     */
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+            new ObjectName("sudoku:type=SolverStats,name=" + name));
+    }
+
+    public synchronized long getNodes() {
+        return nodes;
+    }
+
+    public synchronized long getBacktracks() {
+        return backtracks;
+    }
+
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public synchronized long getCovers() {
+        return covers;
+    }
+
+    public synchronized long getUncovers() {
+        return uncovers;
+    }
+
+    public synchronized long getPropagations() {
+        return propagations;
+    }
+
+    public synchronized long getSolutions() {
+        return solutions;
+    }
+
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    public synchronized long getBuildTime() {
+        return buildTime;
+    }
+
+    public synchronized long getSearchTime() {
+        return searchTime;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "nodes " + nodes + ", backtracks " + backtracks
+            + ", maxDepth " + maxDepth + ", covers " + covers
+            + ", uncovers " + uncovers + ", propagations " + propagations
+            + ", solutions " + solutions + ", timeouts " + timeouts
+            + ", buildTime " + (buildTime / 1000) + " us"
+            + ", searchTime " + (searchTime / 1000) + " us";
+    }
+}
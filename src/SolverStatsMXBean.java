@@ -0,0 +1,16 @@
+/**
+ * The management interface of SolverStats, through which the counters can
+ * be watched over JMX, e.g. with jconsole.
+ **/
+public interface SolverStatsMXBean {
+    long getNodes();
+    long getBacktracks();
+    int getMaxDepth();
+    long getCovers();
+    long getUncovers();
+    long getPropagations();
+    long getSolutions();
+    long getTimeouts();
+    long getBuildTime();
+    long getSearchTime();
+}
@@ -1,12 +1,21 @@
+import java.io.FileWriter;
+import java.io.IOException;
+
 /**
  * Accepts a sudoku challege as a command-line input and prints to sysout all
  * available solutions. The input board is a comma-delimited list of numbers,
- * row by row, with empty positions denoted by zeroes.
+ * row by row, with empty positions denoted by zeroes, or a line in the
+ * compact format of PuzzleFormat.
+ *
+ * For debugging, the exact cover matrix built by the DancingLinksSolver can
+ * be written to a file named by the sudoku.trace system property, and the
+ * statistics of each solver are printed when the sudoku.stats system property
+ * is set.
  **/
 public class Sudoku {
 
-    public static void main(String[] args) {
-        String[] input = args[0].split(",");
+    public static void main(String[] args) throws IOException {
+        int[] input = PuzzleFormat.parse(args[0], null);
 
 	Solver solver;
         long startTime;
@@ -17,6 +26,7 @@ public class Sudoku {
         solver.solve();
         System.out.println("timeTaken by Simple2DBacktrackSolver: "
             + (System.currentTimeMillis() - startTime));
+        if (SolverStats.ENABLED) System.out.println(solver.getStats());
 
         solver = new Simple1DBacktrackSolver(input, "Simple1DBacktrackSolver");
         solver.printInput();
@@ -24,13 +34,45 @@ public class Sudoku {
         solver.solve();
         System.out.println("timeTaken by Simple1DBacktrackSolver: "
             + (System.currentTimeMillis() - startTime));
+        if (SolverStats.ENABLED) System.out.println(solver.getStats());
 
         solver = new DancingLinksSolver(input, "DancingLinksSolver");
+        String traceFile = System.getProperty("sudoku.trace");
+        if (traceFile != null) {
+            ((DancingLinksSolver)solver).trace = new FileWriter(traceFile);
+        }
         solver.printInput();
         startTime = System.currentTimeMillis();
         solver.solve();
+        if (traceFile != null) ((DancingLinksSolver)solver).trace.close();
         System.out.println("timeTaken by DancingLinksSolver: "
             + (System.currentTimeMillis() - startTime));
+        if (SolverStats.ENABLED) System.out.println(solver.getStats());
+
+        solver = new ArrayDancingLinksSolver(input, "ArrayDancingLinksSolver");
+        solver.printInput();
+        startTime = System.currentTimeMillis();
+        solver.solve();
+        System.out.println("timeTaken by ArrayDancingLinksSolver: "
+            + (System.currentTimeMillis() - startTime));
+        if (SolverStats.ENABLED) System.out.println(solver.getStats());
+
+        solver = new BitmaskSolver(input, "BitmaskSolver");
+        solver.printInput();
+        startTime = System.currentTimeMillis();
+        solver.solve();
+        System.out.println("timeTaken by BitmaskSolver: "
+            + (System.currentTimeMillis() - startTime));
+        if (SolverStats.ENABLED) System.out.println(solver.getStats());
+
+        solver = new PortfolioSolver(input, "PortfolioSolver");
+        solver.printInput();
+        startTime = System.currentTimeMillis();
+        solver.solve();
+        System.out.println("timeTaken by PortfolioSolver ("
+            + ((PortfolioSolver)solver).getWinner() + " won): "
+            + (System.currentTimeMillis() - startTime));
+        if (SolverStats.ENABLED) System.out.println(solver.getStats());
     }
 }
 
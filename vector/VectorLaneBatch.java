@@ -0,0 +1,76 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The LaneBatch with its rounds of propagation vectorized: the lanes of a
+ * unit are taken as many at a time as the preferred vector shape of the
+ * machine holds, e.g. 8 ints with AVX2, and every step of the scalar round
+ * becomes a lane-wise vector operation, with a lane mask standing in for
+ * each test of a single lane. The steps and their order within each lane are
+ * those of LaneBatch.round, so the results are the same.
+ *
+ * Needs the jdk.incubator.vector module when compiled and when run; see
+ * the vector target of build.xml.
+ **/
+public class VectorLaneBatch extends LaneBatch {
+    static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    public VectorLaneBatch(int size, int lanes) {
+        super(size, lanes);
+        if (lanes % SPECIES.length() != 0) {
+            throw new IllegalArgumentException(lanes + " lanes do not fill "
+                + "vectors of " + SPECIES.length());
+        }
+    }
+
+    @Override
+    boolean round() {
+        boolean changed = false;
+        IntVector zero = IntVector.zero(SPECIES);
+        IntVector allBits = IntVector.broadcast(SPECIES, all);
+        for (int[] unit : units) {
+            for (int l = 0; l < lanes; l += SPECIES.length()) {
+                IntVector solved = zero;
+                IntVector twiceSolved = zero;
+                IntVector once = zero;
+                IntVector twice = zero;
+                for (int p : unit) {
+                    IntVector m = IntVector.fromArray(SPECIES, cand,
+                        p * lanes + l);
+                    IntVector single = zero.blend(m, isSingle(m));
+                    twiceSolved = twiceSolved.or(solved.and(single));
+                    solved = solved.or(single);
+                    twice = twice.or(once.and(m));
+                    once = once.or(m);
+                }
+                IntVector hidden = once.and(twice.not()).and(solved.not());
+                IntVector.fromArray(SPECIES, dead, l)
+                    .or(twiceSolved).or(allBits.and(once.not()))
+                    .intoArray(dead, l);
+                for (int p : unit) {
+                    IntVector m = IntVector.fromArray(SPECIES, cand,
+                        p * lanes + l);
+                    IntVector n = m.and(solved.not());
+                    IntVector narrowed = n.and(hidden);
+                    n = n.blend(narrowed,
+                        narrowed.compare(VectorOperators.NE, 0));
+                    n = n.blend(m, isSingle(m));
+                    if (!n.eq(m).allTrue()) {
+                        n.intoArray(cand, p * lanes + l);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * returns the lanes holding at most one candidate.
+     */
+    static VectorMask<Integer> isSingle(IntVector m) {
+        return m.and(m.sub(1)).eq(0);
+    }
+}